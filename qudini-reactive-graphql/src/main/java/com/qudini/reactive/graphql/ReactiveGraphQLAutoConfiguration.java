@@ -1,12 +1,19 @@
 package com.qudini.reactive.graphql;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.qudini.gom.Converters;
 import com.qudini.gom.Gom;
 import com.qudini.gom.TypeResolver;
+import com.qudini.reactive.graphql.document.CachingDocumentProvider;
+import com.qudini.reactive.graphql.http.ExecutionResultWriter;
 import com.qudini.reactive.graphql.http.GraphQLHandler;
 import com.qudini.reactive.graphql.http.LoggingContextAwareExceptionHandler;
+import com.qudini.reactive.graphql.persisted.InMemoryPersistedQueryStore;
+import com.qudini.reactive.graphql.persisted.PersistedQueries;
+import com.qudini.reactive.graphql.persisted.PersistedQueryStore;
 import com.qudini.reactive.graphql.scalar.Scalar;
 import graphql.execution.DataFetcherExceptionHandler;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
 import graphql.schema.GraphQLSchema;
 import graphql.schema.idl.RuntimeWiring;
 import graphql.schema.idl.SchemaGenerator;
@@ -14,13 +21,20 @@ import graphql.schema.idl.SchemaParser;
 import graphql.schema.idl.TypeDefinitionRegistry;
 import graphql.schema.idl.TypeRuntimeWiring;
 import graphql.schema.visibility.NoIntrospectionGraphqlFieldVisibility;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
 import lombok.SneakyThrows;
 import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Flux;
@@ -30,6 +44,7 @@ import reactor.util.context.Context;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.util.Collection;
+import java.util.Optional;
 
 import static java.util.stream.Collectors.toUnmodifiableList;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
@@ -88,8 +103,47 @@ public class ReactiveGraphQLAutoConfiguration {
     }
 
     @Bean
-    public GraphQLHandler graphqlHandler(Gom gom, GraphQLSchema graphqlSchema, DataFetcherExceptionHandler graphqlExceptionHandler) {
-        return new GraphQLHandler(gom, graphqlSchema, graphqlExceptionHandler);
+    @ConditionalOnMissingBean(PreparsedDocumentProvider.class)
+    public CachingDocumentProvider graphqlDocumentProvider(@Value("${qudini-reactive.graphql-document-cache-max-total-query-length:1000000}") long maxQueriesLength) {
+        return new CachingDocumentProvider(maxQueriesLength);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @SneakyThrows
+    public PersistedQueries graphqlPersistedQueries(
+            ResourceLoader resourceLoader,
+            ObjectProvider<PersistedQueryStore> persistedQueryStore,
+            ObjectMapper objectMapper,
+            @Value("${qudini-reactive.graphql-persisted-queries-manifest:}") String manifest,
+            @Value("${qudini-reactive.graphql-persisted-queries-cache-max-total-query-length:1000000}") long maxQueriesLength
+    ) {
+        if (manifest.isBlank()) {
+            return PersistedQueries.registering(persistedQueryStore.getIfAvailable(() -> new InMemoryPersistedQueryStore(maxQueriesLength)));
+        }
+        try (var stream = resourceLoader.getResource(manifest).getInputStream()) {
+            return PersistedQueries.allowlisting(PersistedQueries.readManifest(stream, objectMapper));
+        }
+    }
+
+    @Bean
+    public GraphQLHandler graphqlHandler(
+            Gom gom,
+            GraphQLSchema graphqlSchema,
+            DataFetcherExceptionHandler graphqlExceptionHandler,
+            PreparsedDocumentProvider graphqlDocumentProvider,
+            ObjectProvider<PersistedQueries> graphqlPersistedQueries,
+            ObjectMapper objectMapper
+    ) {
+        return new GraphQLHandler(
+                gom,
+                () -> graphqlSchema,
+                graphqlExceptionHandler,
+                graphqlDocumentProvider,
+                Optional.ofNullable(graphqlPersistedQueries.getIfAvailable()),
+                objectMapper,
+                new ExecutionResultWriter(objectMapper)
+        );
     }
 
     @Bean
@@ -99,4 +153,28 @@ public class ReactiveGraphQLAutoConfiguration {
                 graphqlHandler::postJson
         );
     }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(MeterRegistry.class)
+    static class GraphQLMetricsConfiguration {
+
+        /**
+         * <p>Binds the metrics once all the beans are created: bean conditions can't be used here,
+         * as they would be evaluated before the document provider of the enclosing configuration gets registered.</p>
+         */
+        @Bean
+        public SmartInitializingSingleton graphqlDocumentCacheMetrics(
+                ObjectProvider<PreparsedDocumentProvider> graphqlDocumentProvider,
+                ObjectProvider<MeterRegistry> registry
+        ) {
+            return () -> graphqlDocumentProvider.ifAvailable(documentProvider -> {
+                if (documentProvider instanceof CachingDocumentProvider) {
+                    var cache = ((CachingDocumentProvider) documentProvider).getCache();
+                    registry.ifAvailable(meterRegistry -> GuavaCacheMetrics.monitor(meterRegistry, cache, "graphql_documents"));
+                }
+            });
+        }
+
+    }
+
 }
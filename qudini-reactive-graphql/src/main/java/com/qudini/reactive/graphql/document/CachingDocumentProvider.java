@@ -0,0 +1,67 @@
+package com.qudini.reactive.graphql.document;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+import lombok.SneakyThrows;
+import lombok.Value;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * <p>Keeps the parsed and validated documents of the most recent queries, keyed by their text and operation name,
+ * so that the queries sent over and over again by the clients are only parsed and validated once.</p>
+ * <p>The cache is bounded by the total length of the cached queries and operation names, in characters
+ * (the parsed documents growing along with them), least recently used queries being evicted first.</p>
+ */
+public final class CachingDocumentProvider implements PreparsedDocumentProvider {
+
+    private final Cache<Key, PreparsedDocumentEntry> cache;
+
+    public CachingDocumentProvider(long maxQueriesLength) {
+        if (maxQueriesLength < 1) {
+            throw new IllegalArgumentException("The document cache max total query length must be positive, got " + maxQueriesLength);
+        }
+        this.cache = CacheBuilder
+                .newBuilder()
+                .maximumWeight(maxQueriesLength)
+                .<Key, PreparsedDocumentEntry>weigher((key, entry) -> key.getQuery().length() + key.getOperationName().map(String::length).orElse(0))
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    @SneakyThrows
+    public CompletableFuture<PreparsedDocumentEntry> getDocumentAsync(ExecutionInput executionInput, Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction) {
+        var key = new Key(executionInput.getQuery(), Optional.ofNullable(executionInput.getOperationName()));
+        return CompletableFuture.completedFuture(cache.get(key, () -> parseAndValidateFunction.apply(executionInput)));
+    }
+
+    /**
+     * <p>The hits, misses and evictions of the cache so far.</p>
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * <p>The underlying cache, e.g. to expose its metrics.</p>
+     */
+    public Cache<?, ?> getCache() {
+        return cache;
+    }
+
+    @Value
+    private static class Key {
+
+        String query;
+        Optional<String> operationName;
+
+    }
+
+}
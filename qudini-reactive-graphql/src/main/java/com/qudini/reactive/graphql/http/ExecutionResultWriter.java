@@ -0,0 +1,106 @@
+package com.qudini.reactive.graphql.http;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.ExecutionResult;
+import graphql.GraphQLError;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.web.reactive.function.BodyInserter;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * <p>Serialises execution results straight into the data buffers of the response (pooled by the server),
+ * following the layout of {@link ExecutionResult#toSpecification()} without building it,
+ * nor going through an intermediate byte array.</p>
+ */
+public final class ExecutionResultWriter {
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    private final ObjectMapper objectMapper;
+
+    public ExecutionResultWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public BodyInserter<Mono<ExecutionResult>, ReactiveHttpOutputMessage> inserter(Mono<ExecutionResult> result) {
+        return (message, context) -> message.writeWith(result.map(executionResult -> write(executionResult, message.bufferFactory())));
+    }
+
+    /**
+     * <p>Writes the given results as a JSON array, in the same order, for batched operations.</p>
+     */
+    public BodyInserter<Mono<List<ExecutionResult>>, ReactiveHttpOutputMessage> batchInserter(Mono<List<ExecutionResult>> results) {
+        return (message, context) -> message.writeWith(results.map(executionResults -> write(executionResults, message.bufferFactory())));
+    }
+
+    /**
+     * <p>Writes the given result into a buffer allocated by the given factory, released if the serialisation fails.</p>
+     */
+    public DataBuffer write(ExecutionResult result, DataBufferFactory bufferFactory) {
+        return write(bufferFactory, generator -> writeResult(generator, result));
+    }
+
+    /**
+     * <p>Writes the given results as a JSON array into a buffer allocated by the given factory, released if the serialisation fails.</p>
+     */
+    public DataBuffer write(List<ExecutionResult> results, DataBufferFactory bufferFactory) {
+        return write(bufferFactory, generator -> {
+            generator.writeStartArray();
+            for (ExecutionResult result : results) {
+                writeResult(generator, result);
+            }
+            generator.writeEndArray();
+        });
+    }
+
+    private DataBuffer write(DataBufferFactory bufferFactory, Writer writer) {
+        var buffer = bufferFactory.allocateBuffer(INITIAL_BUFFER_SIZE);
+        var written = false;
+        try (var generator = objectMapper.createGenerator(buffer.asOutputStream(), JsonEncoding.UTF8)) {
+            writer.write(generator);
+            written = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (!written) {
+                DataBufferUtils.release(buffer);
+            }
+        }
+        return buffer;
+    }
+
+    private void writeResult(JsonGenerator generator, ExecutionResult result) throws IOException {
+        generator.writeStartObject();
+        if (!result.getErrors().isEmpty()) {
+            generator.writeArrayFieldStart("errors");
+            for (GraphQLError error : result.getErrors()) {
+                objectMapper.writeValue(generator, error.toSpecification());
+            }
+            generator.writeEndArray();
+        }
+        if (result.isDataPresent()) {
+            generator.writeFieldName("data");
+            objectMapper.writeValue(generator, result.getData());
+        }
+        if (result.getExtensions() != null) {
+            generator.writeFieldName("extensions");
+            objectMapper.writeValue(generator, result.getExtensions());
+        }
+        generator.writeEndObject();
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+}
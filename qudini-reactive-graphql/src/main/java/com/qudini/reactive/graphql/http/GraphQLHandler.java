@@ -1,6 +1,10 @@
 package com.qudini.reactive.graphql.http;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.qudini.gom.Gom;
+import com.qudini.reactive.graphql.persisted.PersistedQueries;
+import com.qudini.reactive.graphql.persisted.PersistedQueryException;
 import com.qudini.reactive.logging.Log;
 import graphql.ExecutionResult;
 import graphql.GraphQL;
@@ -9,59 +13,191 @@ import graphql.analysis.MaxQueryDepthInstrumentation;
 import graphql.execution.DataFetcherExceptionHandler;
 import graphql.execution.instrumentation.ChainedInstrumentation;
 import graphql.execution.instrumentation.Instrumentation;
+import graphql.execution.preparsed.NoOpPreparsedDocumentProvider;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
 import graphql.schema.GraphQLSchema;
-import lombok.RequiredArgsConstructor;
 import org.dataloader.DataLoaderRegistry;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.PayloadTooLargeException;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.context.ContextView;
 
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 import static com.qudini.utils.MoreTuples.onBoth;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.web.reactive.function.server.ServerResponse.badRequest;
 import static org.springframework.web.reactive.function.server.ServerResponse.ok;
 
-@RequiredArgsConstructor
 public final class GraphQLHandler {
 
     private final Gom gom;
-    private final GraphQLSchema schema;
+    private final Supplier<GraphQLSchema> schema;
     private final DataFetcherExceptionHandler exceptionHandler;
+    private final PreparsedDocumentProvider documentProvider;
+    private final Optional<PersistedQueries> persistedQueries;
+    private final ExecutionResultWriter resultWriter;
+    private final ObjectReader requestReader;
+    private final ObjectReader batchReader;
 
     @Value("${qudini-reactive.graphql-max-depth:5}")
     private Integer maxDepth;
 
+    @Value("${qudini-reactive.graphql-max-batch-size:20}")
+    private Integer maxBatchSize;
+
+    // same limit as the one the codecs apply when decoding bodies:
+    @Value("${spring.codec.max-in-memory-size:256KB}")
+    private DataSize maxInMemorySize = DataSize.ofKilobytes(256);
+
+    private volatile GraphQL graphql;
+
+    public GraphQLHandler(Gom gom, GraphQLSchema schema, DataFetcherExceptionHandler exceptionHandler) {
+        this(gom, () -> schema, exceptionHandler, NoOpPreparsedDocumentProvider.INSTANCE, Optional.empty(), Jackson2ObjectMapperBuilder.json().build());
+    }
+
+    private GraphQLHandler(
+            Gom gom,
+            Supplier<GraphQLSchema> schema,
+            DataFetcherExceptionHandler exceptionHandler,
+            PreparsedDocumentProvider documentProvider,
+            Optional<PersistedQueries> persistedQueries,
+            ObjectMapper objectMapper
+    ) {
+        this(gom, schema, exceptionHandler, documentProvider, persistedQueries, objectMapper, new ExecutionResultWriter(objectMapper));
+    }
+
+    /**
+     * <p>The engine is built once, and only rebuilt when the given supplier returns another schema.</p>
+     * <p>The given document provider caches the parsed and validated queries, if any.</p>
+     * <p>The given persisted queries resolve the queries sent via their hash, if any.</p>
+     * <p>The given mapper deserialises the requests, and the given writer serialises the results into the response.</p>
+     */
+    public GraphQLHandler(
+            Gom gom,
+            Supplier<GraphQLSchema> schema,
+            DataFetcherExceptionHandler exceptionHandler,
+            PreparsedDocumentProvider documentProvider,
+            Optional<PersistedQueries> persistedQueries,
+            ObjectMapper objectMapper,
+            ExecutionResultWriter resultWriter
+    ) {
+        this.gom = gom;
+        this.schema = schema;
+        this.exceptionHandler = exceptionHandler;
+        this.documentProvider = documentProvider;
+        this.persistedQueries = persistedQueries;
+        this.resultWriter = resultWriter;
+        this.requestReader = objectMapper.readerFor(GraphQLRequest.class);
+        this.batchReader = objectMapper.readerFor(GraphQLRequest[].class);
+    }
+
+    /**
+     * <p>Executes a single operation, or a JSON array of operations (batched operations).</p>
+     * <p>Batched operations are executed concurrently, each with its own data loaders:
+     * the {@link com.qudini.gom.Batched} resolvers can't load the keys of different operations in the same batch,
+     * as their GraphQL contexts differ.
+     * Their results are returned as a JSON array, in the same order.</p>
+     * <p>Bodies larger than <code>spring.codec.max-in-memory-size</code> are refused with a 413, as the codecs would.</p>
+     */
     public Mono<ServerResponse> postJson(ServerRequest request) {
         return Mono
                 .deferContextual(Mono::just)
-                .zipWith(request.bodyToMono(GraphQLRequest.class))
-                .flatMap(onBoth(this::execute))
-                .transform(this::respond);
+                .zipWith(DataBufferUtils
+                        .join(request.bodyToFlux(DataBuffer.class), (int) maxInMemorySize.toBytes())
+                        .onErrorMap(DataBufferLimitException.class, PayloadTooLargeException::new))
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                .flatMap(onBoth((context, body) -> {
+                    try (var stream = body.asInputStream(true)) {
+                        return isBatch(body)
+                                ? executeBatch(context, List.of(batchReader.<GraphQLRequest[]>readValue(stream)))
+                                : execute(context, requestReader.<GraphQLRequest>readValue(stream)).transform(this::respond);
+                    } catch (IOException e) {
+                        return Mono.error(new ServerWebInputException("Invalid GraphQL request", null, e));
+                    }
+                }));
     }
 
-    private Mono<Map<String, Object>> execute(ContextView context, GraphQLRequest request) {
+    /**
+     * <p>Whether the given body is a JSON array, peeking at its first token without consuming it.</p>
+     */
+    private static boolean isBatch(DataBuffer body) {
+        for (var index = body.readPosition(); index < body.writePosition(); index++) {
+            var b = body.getByte(index);
+            if (!Character.isWhitespace(b)) {
+                return b == '[';
+            }
+        }
+        return false;
+    }
+
+    private Mono<ServerResponse> executeBatch(ContextView context, List<GraphQLRequest> requests) {
+        if (requests.size() > maxBatchSize) {
+            var error = Map.of("message", "At most " + maxBatchSize + " operations can be batched, got " + requests.size());
+            return badRequest().contentType(APPLICATION_JSON).bodyValue(Map.of("errors", List.of(error)));
+        }
+        var results = Flux
+                .fromIterable(requests)
+                .flatMapSequential(request -> execute(context, request))
+                .collectList();
+        return ok()
+                .contentType(APPLICATION_JSON)
+                .body(resultWriter.batchInserter(results));
+    }
+
+    private Mono<ExecutionResult> execute(ContextView context, GraphQLRequest request) {
+        return persistedQueries
+                .map(persisted -> persisted.resolve(request))
+                .orElseGet(() -> Mono.just(request))
+                .flatMap(resolvedRequest -> executeResolved(context, resolvedRequest))
+                .onErrorResume(PersistedQueryException.class, error -> Mono.just(error.toExecutionResult()));
+    }
+
+    private Mono<ExecutionResult> executeResolved(ContextView context, GraphQLRequest request) {
         var registry = new DataLoaderRegistry();
         gom.decorateDataLoaderRegistry(registry);
         var input = request.toExecutionInput(context, registry);
-        var graphql = GraphQL
-                .newGraphQL(schema)
-                .instrumentation(instrumentation())
-                .defaultDataFetcherExceptionHandler(exceptionHandler)
-                .build();
-        return Log
-                .thenFuture(() -> graphql.executeAsync(input))
-                .map(ExecutionResult::toSpecification);
+        var graphql = getGraphQL();
+        return Log.thenFuture(() -> graphql.executeAsync(input));
     }
 
-    private Mono<ServerResponse> respond(Mono<Map<String, Object>> body) {
+    private Mono<ServerResponse> respond(Mono<ExecutionResult> result) {
         return ok()
                 .contentType(APPLICATION_JSON)
-                .body(body, ParameterizedTypeReference.forType(Map.class));
+                .body(resultWriter.inserter(result));
+    }
+
+    /**
+     * <p>The engine executing the requests, built on first use (once the max depth has been injected).</p>
+     */
+    GraphQL getGraphQL() {
+        var currentSchema = schema.get();
+        var current = graphql;
+        if (current == null || current.getGraphQLSchema() != currentSchema) {
+            // concurrent first requests may build it more than once, which is harmless:
+            current = GraphQL
+                    .newGraphQL(currentSchema)
+                    .instrumentation(instrumentation())
+                    .defaultDataFetcherExceptionHandler(exceptionHandler)
+                    .preparsedDocumentProvider(documentProvider)
+                    .build();
+            graphql = current;
+        }
+        return current;
     }
 
     public Instrumentation instrumentation() {
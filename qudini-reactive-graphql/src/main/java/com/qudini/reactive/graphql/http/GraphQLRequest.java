@@ -5,6 +5,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import graphql.ExecutionInput;
 import lombok.AllArgsConstructor;
 import lombok.Value;
+import lombok.With;
 import org.dataloader.DataLoaderRegistry;
 import reactor.util.context.Context;
 import reactor.util.context.ContextView;
@@ -18,17 +19,36 @@ import static lombok.AccessLevel.PRIVATE;
 @AllArgsConstructor(access = PRIVATE)
 public class GraphQLRequest {
 
+    @With
     String query;
     Optional<String> operationName;
     Optional<Map<String, Object>> variables;
+    Optional<Map<String, Object>> extensions;
+
+    public static GraphQLRequest of(String query, Optional<String> operationName, Optional<Map<String, Object>> variables) {
+        return new GraphQLRequest(query, operationName, variables, Optional.empty());
+    }
 
     @JsonCreator
     public static GraphQLRequest of(
             @JsonProperty("query") String query,
             @JsonProperty("operationName") Optional<String> operationName,
-            @JsonProperty("variables") Optional<Map<String, Object>> variables
+            @JsonProperty("variables") Optional<Map<String, Object>> variables,
+            @JsonProperty("extensions") Optional<Map<String, Object>> extensions
     ) {
-        return new GraphQLRequest(query, operationName, variables);
+        return new GraphQLRequest(query, operationName, variables, extensions);
+    }
+
+    /**
+     * <p>The SHA-256 hash of the persisted query, if sent (<code>extensions.persistedQuery.sha256Hash</code>).</p>
+     */
+    public Optional<String> getPersistedQueryHash() {
+        return extensions
+                .map(values -> values.get("persistedQuery"))
+                .filter(Map.class::isInstance)
+                .map(persistedQuery -> ((Map<?, ?>) persistedQuery).get("sha256Hash"))
+                .filter(String.class::isInstance)
+                .map(String.class::cast);
     }
 
     public ExecutionInput toExecutionInput(ContextView context, DataLoaderRegistry registry) {
@@ -0,0 +1,36 @@
+package com.qudini.reactive.graphql.persisted;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>A {@link PersistedQueryStore} keeping the most recently used queries in a local cache,
+ * bounded by the total length of the stored queries, in characters.</p>
+ */
+public final class InMemoryPersistedQueryStore implements PersistedQueryStore {
+
+    private final Cache<String, String> queries;
+
+    public InMemoryPersistedQueryStore(long maxQueriesLength) {
+        if (maxQueriesLength < 1) {
+            throw new IllegalArgumentException("The persisted queries cache max total query length must be positive, got " + maxQueriesLength);
+        }
+        this.queries = CacheBuilder
+                .newBuilder()
+                .maximumWeight(maxQueriesLength)
+                .<String, String>weigher((hash, query) -> query.length())
+                .build();
+    }
+
+    @Override
+    public Mono<String> get(String hash) {
+        return Mono.fromSupplier(() -> queries.getIfPresent(hash));
+    }
+
+    @Override
+    public Mono<Void> put(String hash, String query) {
+        return Mono.fromRunnable(() -> queries.put(hash, query));
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.qudini.reactive.graphql.persisted;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import com.qudini.reactive.graphql.http.GraphQLRequest;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>Resolves the persisted queries sent via their SHA-256 hash (<code>extensions.persistedQuery.sha256Hash</code>),
+ * as sent by the clients implementing automatic persisted queries.</p>
+ * <p>Either registering (the clients send the query along with its hash when it's not found, which is then stored),
+ * or allowlisting (only the queries known at startup can be executed, whether sent via their hash or in full).</p>
+ */
+public final class PersistedQueries {
+
+    public static final String NOT_FOUND = "PERSISTED_QUERY_NOT_FOUND";
+
+    public static final String NOT_ALLOWED = "PERSISTED_QUERY_NOT_ALLOWED";
+
+    public static final String HASH_MISMATCH = "PERSISTED_QUERY_HASH_MISMATCH";
+
+    private final Optional<PersistedQueryStore> store;
+
+    private final Map<String, String> allowlist;
+
+    private PersistedQueries(Optional<PersistedQueryStore> store, Map<String, String> allowlist) {
+        this.store = store;
+        this.allowlist = allowlist;
+    }
+
+    /**
+     * <p>Stores the queries registered by the clients in the given store.</p>
+     */
+    public static PersistedQueries registering(PersistedQueryStore store) {
+        return new PersistedQueries(Optional.of(store), Map.of());
+    }
+
+    /**
+     * <p>Only executes the given queries, by hash.</p>
+     */
+    public static PersistedQueries allowlisting(Map<String, String> queries) {
+        Map<String, String> allowlist = new HashMap<>();
+        queries.forEach((hash, query) -> allowlist.put(hash.toLowerCase(Locale.ROOT), query));
+        return new PersistedQueries(Optional.empty(), Map.copyOf(allowlist));
+    }
+
+    /**
+     * <p>Reads the queries of the given <a href="https://www.apollographql.com/docs/kotlin/advanced/persisted-queries">persisted query manifest</a>,
+     * by hash: <code>{ "operations": [{ "id": "&lt;sha256&gt;", "body": "&lt;query&gt;" }, ...] }</code>.</p>
+     */
+    public static Map<String, String> readManifest(InputStream manifest, ObjectMapper objectMapper) throws IOException {
+        Map<String, String> queries = new HashMap<>();
+        for (JsonNode operation : objectMapper.readTree(manifest).path("operations")) {
+            queries.put(operation.path("id").asText(), operation.path("body").asText());
+        }
+        return queries;
+    }
+
+    /**
+     * <p>Whether only the allowlisted queries can be executed.</p>
+     */
+    public boolean isAllowlisting() {
+        return store.isEmpty();
+    }
+
+    /**
+     * <p>The given request with its query resolved from its hash if needed,
+     * or a {@link PersistedQueryException} if it can't be executed.</p>
+     */
+    public Mono<GraphQLRequest> resolve(GraphQLRequest request) {
+        return Mono.defer(() -> {
+            var query = Optional.ofNullable(request.getQuery()).filter(text -> !text.isBlank());
+            var hash = request.getPersistedQueryHash().map(text -> text.toLowerCase(Locale.ROOT));
+            if (hash.isEmpty()) {
+                if (isAllowlisting() && query.map(text -> !allowlist.containsKey(hash(text))).orElse(false)) {
+                    return notAllowed();
+                }
+                return Mono.just(request);
+            }
+            if (query.isPresent()) {
+                return register(request, hash.get(), query.get());
+            }
+            return lookUp(hash.get())
+                    .map(request::withQuery)
+                    .switchIfEmpty(Mono.error(() -> new PersistedQueryException("PersistedQueryNotFound", NOT_FOUND)));
+        });
+    }
+
+    private Mono<GraphQLRequest> register(GraphQLRequest request, String hash, String query) {
+        if (!hash.equals(hash(query))) {
+            return Mono.error(new PersistedQueryException("The provided SHA-256 hash does not match the query", HASH_MISMATCH));
+        }
+        if (isAllowlisting()) {
+            return allowlist.containsKey(hash) ? Mono.just(request) : notAllowed();
+        }
+        return store.orElseThrow().put(hash, query).thenReturn(request);
+    }
+
+    private Mono<String> lookUp(String hash) {
+        return store
+                .map(registered -> registered.get(hash))
+                .orElseGet(() -> Mono.justOrEmpty(allowlist.get(hash)));
+    }
+
+    private static <T> Mono<T> notAllowed() {
+        return Mono.error(new PersistedQueryException("Only the persisted queries are allowed", NOT_ALLOWED));
+    }
+
+    private static String hash(String query) {
+        return Hashing.sha256().hashString(query, UTF_8).toString();
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.qudini.reactive.graphql.persisted;
+
+import graphql.ExecutionResult;
+import graphql.GraphqlErrorBuilder;
+
+import java.util.Map;
+
+/**
+ * <p>Thrown when a persisted query can't be resolved, rendered as a GraphQL error carrying the given code,
+ * as expected by the clients implementing automatic persisted queries (e.g. <code>PERSISTED_QUERY_NOT_FOUND</code>
+ * prompting them to send the query along with its hash).</p>
+ */
+public final class PersistedQueryException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String code;
+
+    public PersistedQueryException(String message, String code) {
+        super(message);
+        this.code = code;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public ExecutionResult toExecutionResult() {
+        var error = GraphqlErrorBuilder
+                .newError()
+                .message(getMessage())
+                .extensions(Map.of("code", code))
+                .build();
+        return ExecutionResult.newExecutionResult().addError(error).build();
+    }
+
+}
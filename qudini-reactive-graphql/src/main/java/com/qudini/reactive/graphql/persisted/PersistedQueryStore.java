@@ -0,0 +1,22 @@
+package com.qudini.reactive.graphql.persisted;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>Stores the queries registered by the clients, by their SHA-256 hash.</p>
+ * <p>{@link InMemoryPersistedQueryStore} only knows about the queries registered on the current instance,
+ * implement this interface with a shared store (e.g. Redis) so that a query registered once is known by all the instances.</p>
+ */
+public interface PersistedQueryStore {
+
+    /**
+     * <p>The query with the given hash, empty if unknown.</p>
+     */
+    Mono<String> get(String hash);
+
+    /**
+     * <p>Registers the given query with its hash.</p>
+     */
+    Mono<Void> put(String hash, String query);
+
+}
@@ -1,6 +1,9 @@
 package com.qudini.reactive.graphql;
 
+import com.google.common.hash.Hashing;
+import com.qudini.reactive.graphql.app.MyFooResolver;
 import com.qudini.reactive.graphql.app.TestApplication;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,8 +11,13 @@ import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWeb
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpStatus.PAYLOAD_TOO_LARGE;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 
 @SpringBootTest(classes = {TestApplication.class, ReactiveGraphQLAutoConfiguration.class})
@@ -20,6 +28,12 @@ class ReactiveGraphQLTest {
     @Autowired
     private WebTestClient webTestClient;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MyFooResolver myFooResolver;
+
     @Test
     @DisplayName("should allow resolving unions/interfaces")
     void resolveInterface() {
@@ -125,6 +139,42 @@ class ReactiveGraphQLTest {
                 .jsonPath("$.data.bar").isEqualTo("BAR");
     }
 
+    @Test
+    @DisplayName("should execute the persisted queries sent via their hash")
+    void persistedQuery() {
+        var query = "query { myFooBars { name } }";
+        var extensions = Map.of("persistedQuery", Map.of("version", 1, "sha256Hash", Hashing.sha256().hashString(query, UTF_8).toString()));
+        webTestClient
+                .post()
+                .uri("/graphql")
+                .contentType(APPLICATION_JSON)
+                .bodyValue(Map.of("extensions", extensions))
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.errors[0].extensions.code").isEqualTo("PERSISTED_QUERY_NOT_FOUND");
+        webTestClient
+                .post()
+                .uri("/graphql")
+                .contentType(APPLICATION_JSON)
+                .bodyValue(Map.of("query", query, "extensions", extensions))
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.errors").doesNotExist()
+                .jsonPath("$.data.myFooBars.length()").isEqualTo(2);
+        webTestClient
+                .post()
+                .uri("/graphql")
+                .contentType(APPLICATION_JSON)
+                .bodyValue(Map.of("extensions", extensions))
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.errors").doesNotExist()
+                .jsonPath("$.data.myFooBars.length()").isEqualTo(2);
+    }
+
     @Test
     @DisplayName("should make the reactive context available to the resolvers")
     void reactiveContext() {
@@ -140,4 +190,89 @@ class ReactiveGraphQLTest {
                 .jsonPath("$.data.context").isEqualTo("helloworld");
     }
 
+    @Test
+    @DisplayName("should execute batched operations")
+    void batchedOperations() {
+        webTestClient
+                .post()
+                .uri("/graphql")
+                .contentType(APPLICATION_JSON)
+                .bodyValue(List.of(
+                        Map.of("query", "query { myFooBars { name } }"),
+                        Map.of("query", "query { context }"),
+                        Map.of("query", "query { unknown }")
+                ))
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(3)
+                .jsonPath("$[0].errors").doesNotExist()
+                .jsonPath("$[0].data.myFooBars.length()").isEqualTo(2)
+                .jsonPath("$[1].errors").doesNotExist()
+                .jsonPath("$[1].data.context").isEqualTo("helloworld")
+                .jsonPath("$[2].errors.length()").isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should refuse too many batched operations")
+    void tooManyBatchedOperations() {
+        webTestClient
+                .post()
+                .uri("/graphql")
+                .contentType(APPLICATION_JSON)
+                .bodyValue(Collections.nCopies(21, Map.of("query", "query { context }")))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.errors.length()").isEqualTo(1)
+                .jsonPath("$.errors[0].message").isEqualTo("At most 20 operations can be batched, got 21");
+    }
+
+    @Test
+    @DisplayName("should refuse the bodies exceeding the max in-memory size")
+    void tooLargeBody() {
+        webTestClient
+                .post()
+                .uri("/graphql")
+                .contentType(APPLICATION_JSON)
+                .bodyValue(Map.of("query", "query { context }" + " ".repeat(300 * 1024)))
+                .exchange()
+                .expectStatus().isEqualTo(PAYLOAD_TOO_LARGE);
+    }
+
+    @Test
+    @DisplayName("should batch the loads of each batched operation separately")
+    void batchedDataLoaders() {
+        // gom can't batch the keys of different operations together, as their GraphQL contexts differ:
+        var query = Map.of("query", "query { myFooBars { ... on MyFoo { description } } }");
+        var loads = myFooResolver.getDescriptionLoads();
+        webTestClient
+                .post()
+                .uri("/graphql")
+                .contentType(APPLICATION_JSON)
+                .bodyValue(List.of(query, query))
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$[0].errors").doesNotExist()
+                .jsonPath("$[0].data.myFooBars[0].description").isEqualTo("The MyFoo")
+                .jsonPath("$[1].errors").doesNotExist()
+                .jsonPath("$[1].data.myFooBars[0].description").isEqualTo("The MyFoo");
+        assertThat(myFooResolver.getDescriptionLoads()).isEqualTo(loads + 2);
+    }
+
+    @Test
+    @DisplayName("should export the metrics of the document cache")
+    void documentCacheMetrics() {
+        webTestClient
+                .post()
+                .uri("/graphql")
+                .contentType(APPLICATION_JSON)
+                .bodyValue(Map.of("query", "query { myFooBars { name } }"))
+                .exchange()
+                .expectStatus().is2xxSuccessful();
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "graphql_documents").tag("result", "miss").functionCounter().count()).isPositive();
+        assertThat(meterRegistry.get("cache.size").tag("cache", "graphql_documents").gauge().value()).isPositive();
+    }
+
 }
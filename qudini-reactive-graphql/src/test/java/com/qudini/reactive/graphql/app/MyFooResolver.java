@@ -0,0 +1,33 @@
+package com.qudini.reactive.graphql.app;
+
+import com.qudini.gom.Batched;
+import com.qudini.gom.FieldResolver;
+import com.qudini.gom.TypeResolver;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toMap;
+
+@Component
+@TypeResolver("MyFoo")
+public class MyFooResolver {
+
+    private final AtomicInteger descriptionLoads = new AtomicInteger();
+
+    @FieldResolver("description")
+    @Batched
+    public Mono<Map<MyFoo, String>> description(Set<MyFoo> myFoos) {
+        descriptionLoads.incrementAndGet();
+        return Mono.just(myFoos.stream().collect(toMap(identity(), myFoo -> "The " + myFoo.getName())));
+    }
+
+    public int getDescriptionLoads() {
+        return descriptionLoads.get();
+    }
+
+}
@@ -1,5 +1,7 @@
 package com.qudini.reactive.graphql.app;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.web.server.WebFilter;
@@ -7,6 +9,11 @@ import org.springframework.web.server.WebFilter;
 @SpringBootApplication
 public class TestApplication {
 
+    @Bean
+    public MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+
     @Bean
     public WebFilter contextFilter() {
         return (exchange, chain) -> chain.filter(exchange).contextWrite(context -> context.put(String.class, "helloworld"));
@@ -0,0 +1,71 @@
+package com.qudini.reactive.graphql.document;
+
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.parser.Parser;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("CachingDocumentProvider")
+class CachingDocumentProviderTest {
+
+    private final AtomicInteger parsings = new AtomicInteger(0);
+
+    private final Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidate = input -> {
+        parsings.incrementAndGet();
+        return new PreparsedDocumentEntry(Parser.parse(input.getQuery()));
+    };
+
+    @Test
+    @DisplayName("should parse a same query only once")
+    void cached() {
+        var provider = new CachingDocumentProvider(1000);
+        var first = provider.getDocumentAsync(buildInput("query { foo }", null), parseAndValidate).join();
+        var second = provider.getDocumentAsync(buildInput("query { foo }", null), parseAndValidate).join();
+        assertThat(second).isSameAs(first);
+        assertThat(parsings.get()).isEqualTo(1);
+        assertThat(provider.getStats().hitCount()).isEqualTo(1);
+        assertThat(provider.getStats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should key the documents by operation name too")
+    void operationName() {
+        var provider = new CachingDocumentProvider(1000);
+        var query = "query Foo { foo } query Bar { bar }";
+        provider.getDocumentAsync(buildInput(query, "Foo"), parseAndValidate).join();
+        provider.getDocumentAsync(buildInput(query, "Bar"), parseAndValidate).join();
+        assertThat(parsings.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("should evict queries once full")
+    void eviction() {
+        var provider = new CachingDocumentProvider(1000);
+        for (var index = 0; index < 200; index++) {
+            provider.getDocumentAsync(buildInput("query { foo" + index + " }", null), parseAndValidate).join();
+        }
+        provider.getDocumentAsync(buildInput("query { foo199 }", null), parseAndValidate).join();
+        assertThat(provider.getStats().evictionCount()).isPositive();
+        assertThat(provider.getCache().size()).isLessThan(200);
+        assertThat(parsings.get()).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("should refuse non-positive sizes")
+    void invalidSize() {
+        var thrownException = assertThrows(IllegalArgumentException.class, () -> new CachingDocumentProvider(0));
+        assertThat(thrownException.getMessage()).isEqualTo("The document cache max total query length must be positive, got 0");
+    }
+
+    private static ExecutionInput buildInput(String query, String operationName) {
+        return ExecutionInput.newExecutionInput().query(query).operationName(operationName).build();
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.qudini.reactive.graphql.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.ExecutionResult;
+import graphql.GraphqlErrorBuilder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("ExecutionResultWriter")
+class ExecutionResultWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ExecutionResultWriter writer = new ExecutionResultWriter(objectMapper);
+
+    @Test
+    @DisplayName("should write the same JSON as the specification of the result")
+    void specification() throws Exception {
+        var result = ExecutionResult
+                .newExecutionResult()
+                .data(Map.of("myFooBars", List.of(Map.of("name", "MyFoo"), Map.of("name", "MyBär"))))
+                .addError(GraphqlErrorBuilder.newError().message("the error").extensions(Map.of("code", "THE_CODE")).build())
+                .extensions(Map.of("the-extension", 42))
+                .build();
+
+        var buffer = writer.write(result, DefaultDataBufferFactory.sharedInstance);
+
+        assertThat(objectMapper.readTree(buffer.toString(UTF_8))).isEqualTo(objectMapper.valueToTree(result.toSpecification()));
+    }
+
+    @Test
+    @DisplayName("should omit the data when not present")
+    void noData() {
+        var result = ExecutionResult
+                .newExecutionResult()
+                .addError(GraphqlErrorBuilder.newError().message("the error").build())
+                .build();
+
+        var buffer = writer.write(result, DefaultDataBufferFactory.sharedInstance);
+
+        assertThat(buffer.toString(UTF_8)).startsWith("{\"errors\":[{\"message\":\"the error\"").doesNotContain("\"data\"");
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.qudini.reactive.graphql.http;
+
+import com.qudini.gom.Gom;
+import com.qudini.reactive.graphql.ReactiveGraphQLAutoConfiguration;
+import com.qudini.reactive.graphql.app.TestApplication;
+import graphql.GraphQL;
+import graphql.execution.DataFetcherExceptionHandler;
+import graphql.schema.GraphQLSchema;
+import lombok.extern.slf4j.Slf4j;
+import org.dataloader.DataLoaderRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.util.context.Context;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <p>Measures the requests per second executed by the engine of the handler, built once,
+ * against an engine built for each request (as the handler used to do), for a small query of the test application.</p>
+ * <p>Not run as part of the build, run it via <code>mvn test -pl qudini-reactive-graphql -Dtest=GraphQLHandlerBenchmark</code>,
+ * optionally with <code>-Dbenchmark.requests=N</code> (defaults to 50000).</p>
+ */
+@Slf4j
+@SpringBootTest(classes = {TestApplication.class, ReactiveGraphQLAutoConfiguration.class})
+@DisplayName("GraphQLHandler benchmark")
+class GraphQLHandlerBenchmark {
+
+    private static final int REQUESTS = Integer.getInteger("benchmark.requests", 50_000);
+
+    private static final GraphQLRequest REQUEST = GraphQLRequest.of("query { myFooBars { name } }", Optional.empty(), Optional.empty());
+
+    @Autowired
+    private Gom gom;
+
+    @Autowired
+    private GraphQLSchema schema;
+
+    @Autowired
+    private DataFetcherExceptionHandler exceptionHandler;
+
+    @Autowired
+    private GraphQLHandler handler;
+
+    @ParameterizedTest(name = "engine={0}")
+    @ValueSource(strings = {"per-request", "cached"})
+    @DisplayName("should execute the requests")
+    void benchmark(String engine) {
+        Supplier<GraphQL> graphql = "cached".equals(engine)
+                ? handler::getGraphQL
+                : () -> GraphQL
+                        .newGraphQL(schema)
+                        .instrumentation(handler.instrumentation())
+                        .defaultDataFetcherExceptionHandler(exceptionHandler)
+                        .build();
+        // warm-up:
+        run(REQUESTS / 10, graphql);
+        var elapsed = run(REQUESTS, graphql);
+        log.info(
+                "engine={}: {} requests in {}ms, {} requests/s, {}us/request",
+                engine,
+                REQUESTS,
+                elapsed / 1_000_000,
+                REQUESTS * 1_000_000_000L / Math.max(1, elapsed),
+                elapsed / 1000 / REQUESTS
+        );
+    }
+
+    private long run(int requests, Supplier<GraphQL> graphql) {
+        var start = System.nanoTime();
+        for (var index = 0; index < requests; index++) {
+            var registry = new DataLoaderRegistry();
+            gom.decorateDataLoaderRegistry(registry);
+            var result = graphql.get().executeAsync(REQUEST.toExecutionInput(Context.empty(), registry)).join();
+            assertThat(result.getErrors()).isEmpty();
+        }
+        return System.nanoTime() - start;
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.qudini.reactive.graphql.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qudini.gom.Gom;
+import graphql.execution.preparsed.NoOpPreparsedDocumentProvider;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("GraphQLHandler")
+class GraphQLHandlerTest {
+
+    private final Gom gom = Gom.newGom().build();
+
+    @Test
+    @DisplayName("should build the engine only once")
+    void cachedEngine() {
+        var handler = new GraphQLHandler(gom, buildSchema(), new LoggingContextAwareExceptionHandler());
+        ReflectionTestUtils.setField(handler, "maxDepth", 5);
+        assertThat(handler.getGraphQL()).isSameAs(handler.getGraphQL());
+    }
+
+    @Test
+    @DisplayName("should rebuild the engine when the schema changes")
+    void schemaChange() {
+        var schema = new AtomicReference<>(buildSchema());
+        var handler = new GraphQLHandler(gom, schema::get, new LoggingContextAwareExceptionHandler(), NoOpPreparsedDocumentProvider.INSTANCE, Optional.empty(), new ObjectMapper(), new ExecutionResultWriter(new ObjectMapper()));
+        ReflectionTestUtils.setField(handler, "maxDepth", 5);
+        var graphql = handler.getGraphQL();
+        schema.set(buildSchema());
+        assertThat(handler.getGraphQL()).isNotSameAs(graphql);
+        assertThat(handler.getGraphQL().getGraphQLSchema()).isSameAs(schema.get());
+    }
+
+    private static GraphQLSchema buildSchema() {
+        var registry = new SchemaParser().parse("type Query { hello: String }");
+        return new SchemaGenerator().makeExecutableSchema(registry, RuntimeWiring.newRuntimeWiring().build());
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.qudini.reactive.graphql.persisted;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import com.qudini.reactive.graphql.http.GraphQLRequest;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("PersistedQueries")
+class PersistedQueriesTest {
+
+    private static final String QUERY = "query { myFooBars { name } }";
+
+    private static final String HASH = Hashing.sha256().hashString(QUERY, UTF_8).toString();
+
+    @Test
+    @DisplayName("should register the queries sent along with their hash")
+    void registration() {
+        var persistedQueries = PersistedQueries.registering(new InMemoryPersistedQueryStore(1000));
+
+        var notFound = assertThrows(PersistedQueryException.class, () -> persistedQueries.resolve(buildRequest(null, HASH)).block());
+        assertThat(notFound.getCode()).isEqualTo(PersistedQueries.NOT_FOUND);
+
+        assertThat(persistedQueries.resolve(buildRequest(QUERY, HASH)).block().getQuery()).isEqualTo(QUERY);
+        assertThat(persistedQueries.resolve(buildRequest(null, HASH)).block().getQuery()).isEqualTo(QUERY);
+    }
+
+    @Test
+    @DisplayName("should refuse queries not matching their hash")
+    void hashMismatch() {
+        var persistedQueries = PersistedQueries.registering(new InMemoryPersistedQueryStore(1000));
+        var thrownException = assertThrows(PersistedQueryException.class, () -> persistedQueries.resolve(buildRequest("query { context }", HASH)).block());
+        assertThat(thrownException.getCode()).isEqualTo(PersistedQueries.HASH_MISMATCH);
+        var notRegistered = assertThrows(PersistedQueryException.class, () -> persistedQueries.resolve(buildRequest(null, HASH)).block());
+        assertThat(notRegistered.getCode()).isEqualTo(PersistedQueries.NOT_FOUND);
+    }
+
+    @Test
+    @DisplayName("should only execute the allowlisted queries")
+    void allowlist() throws Exception {
+        var manifest = "{\"format\":\"apollo-persisted-query-manifest\",\"version\":1,\"operations\":[{\"id\":\"" + HASH + "\",\"name\":\"MyFooBars\",\"type\":\"query\",\"body\":\"" + QUERY + "\"}]}";
+        var persistedQueries = PersistedQueries.allowlisting(PersistedQueries.readManifest(new ByteArrayInputStream(manifest.getBytes(UTF_8)), new ObjectMapper()));
+
+        assertThat(persistedQueries.resolve(buildRequest(null, HASH)).block().getQuery()).isEqualTo(QUERY);
+        assertThat(persistedQueries.resolve(buildRequest(QUERY, null)).block().getQuery()).isEqualTo(QUERY);
+
+        var otherQuery = "query { context }";
+        var otherHash = Hashing.sha256().hashString(otherQuery, UTF_8).toString();
+        var notAllowed = assertThrows(PersistedQueryException.class, () -> persistedQueries.resolve(buildRequest(otherQuery, null)).block());
+        assertThat(notAllowed.getCode()).isEqualTo(PersistedQueries.NOT_ALLOWED);
+        var notRegistered = assertThrows(PersistedQueryException.class, () -> persistedQueries.resolve(buildRequest(otherQuery, otherHash)).block());
+        assertThat(notRegistered.getCode()).isEqualTo(PersistedQueries.NOT_ALLOWED);
+    }
+
+    private static GraphQLRequest buildRequest(String query, String hash) {
+        var extensions = Optional
+                .ofNullable(hash)
+                .map(sha256Hash -> Map.<String, Object>of("persistedQuery", Map.of("version", 1, "sha256Hash", sha256Hash)));
+        return GraphQLRequest.of(query, Optional.empty(), Optional.empty(), extensions);
+    }
+
+}
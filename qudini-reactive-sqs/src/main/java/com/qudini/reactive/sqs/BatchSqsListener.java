@@ -0,0 +1,49 @@
+package com.qudini.reactive.sqs;
+
+import com.qudini.reactive.sqs.message.Acknowledger;
+import com.qudini.reactive.sqs.message.BatchAcknowledger;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * <p>Non-blocking SQS listener handling the messages of a receive batch all at once, e.g. to bulk-insert them.</p>
+ * <p>Example:</p>
+ * <pre><code>
+ * &#64;Component
+ * public class YourBatchSqsListener implements BatchSqsListener&lt;YourMessage&gt; {
+ *
+ *     &#64;Override
+ *     public String getQueueName() {
+ *         return "your-sqs-queue";
+ *     }
+ *
+ *     &#64;Override
+ *     public Class&lt;YourMessage&gt; getMessageType() {
+ *         return YourMessage.class
+ *     }
+ *
+ *     &#64;Override
+ *     public Mono&lt;Void&gt; handleMessages(List&lt;YourMessage&gt; messages, BatchAcknowledger acknowledger) {
+ *         return insertAll(messages).then(acknowledger.acknowledge());
+ *     }
+ *
+ * }
+ * </code></pre>
+ */
+public interface BatchSqsListener<T> extends SqsListener<T> {
+
+    /**
+     * <p>Handles the incoming SQS messages, in the order they have been received.</p>
+     */
+    Mono<Void> handleMessages(List<T> messages, BatchAcknowledger acknowledger);
+
+    /**
+     * <p>Handles the incoming SQS message as a singleton batch.</p>
+     */
+    @Override
+    default Mono<Void> handleMessage(T message, Acknowledger acknowledger) {
+        return handleMessages(List.of(message), BatchAcknowledger.of(List.of(acknowledger)));
+    }
+
+}
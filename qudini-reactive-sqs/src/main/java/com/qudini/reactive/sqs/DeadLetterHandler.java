@@ -0,0 +1,36 @@
+package com.qudini.reactive.sqs;
+
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.sqs.model.Message;
+
+/**
+ * <p>Handles the SQS messages that can't be handled by their listener, i.e. whose body can't be deserialised,
+ * or that have been received more times than the max receive count of their listener.</p>
+ * <p>The message is deleted from its queue once the returned mono completes,
+ * and left for SQS to redeliver (or to move to its own dead-letter queue) if it fails.</p>
+ * <p>Example:</p>
+ * <pre><code>
+ * &#64;Component
+ * public class YourDeadLetterHandler implements DeadLetterHandler {
+ *
+ *     &#64;Override
+ *     public Mono&lt;Void&gt; handleDeadLetter(String queueUrl, Message message, Throwable error) {
+ *         return Mono
+ *             .fromFuture(() -&gt; sqsClient.sendMessage(builder -&gt; builder
+ *                 .queueUrl(yourDeadLetterQueueUrl)
+ *                 .messageBody(message.body())))
+ *             .then();
+ *     }
+ *
+ * }
+ * </code></pre>
+ */
+@FunctionalInterface
+public interface DeadLetterHandler {
+
+    /**
+     * <p>Handles the given message of the given queue, that couldn't be handled because of the given error.</p>
+     */
+    Mono<Void> handleDeadLetter(String queueUrl, Message message, Throwable error);
+
+}
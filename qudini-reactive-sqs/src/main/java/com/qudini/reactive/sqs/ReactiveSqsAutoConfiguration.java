@@ -2,19 +2,44 @@ package com.qudini.reactive.sqs;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.qudini.reactive.logging.ReactiveLoggingContextCreator;
+import com.qudini.reactive.sqs.dedup.DeduplicationStore;
+import com.qudini.reactive.sqs.dedup.InMemoryDeduplicationStore;
 import com.qudini.reactive.sqs.listener.SqsListeners;
+import com.qudini.reactive.sqs.listener.SqsListenersHealthIndicator;
+import com.qudini.reactive.sqs.listener.SqsListenersSettings;
 import com.qudini.reactive.sqs.message.DefaultSqsMessageChecker;
 import com.qudini.reactive.sqs.message.SqsMessageChecker;
+import com.qudini.reactive.sqs.message.SqsMessageCheckerSettings;
+import com.qudini.reactive.sqs.metrics.MicrometerSqsMetrics;
+import com.qudini.reactive.sqs.metrics.SqsMetrics;
+import com.qudini.reactive.sqs.payload.ClaimCheck;
+import com.qudini.reactive.sqs.payload.PayloadStore;
+import com.qudini.reactive.sqs.s3.ResumableS3ObjectReader;
+import com.qudini.reactive.sqs.s3.S3ObjectSource;
+import com.qudini.reactive.sqs.sender.SqsSenderFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.context.event.EventListener;
+import org.springframework.util.unit.DataSize;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 import software.amazon.awssdk.services.sqs.SqsAsyncClient;
 
+import java.time.Duration;
 import java.util.Collection;
+import java.util.Optional;
 
-@AutoConfiguration
+@AutoConfiguration(afterName = "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration")
 public class ReactiveSqsAutoConfiguration {
 
     @Bean
@@ -29,15 +54,115 @@ public class ReactiveSqsAutoConfiguration {
         return objectMapper;
     }
 
+    @Bean
+    @ConditionalOnMissingBean(name = "sqsDeserialisationScheduler")
+    public Scheduler sqsDeserialisationScheduler() {
+        return Schedulers.parallel();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public SqsMessageChecker sqsMessageChecker(
+            SqsAsyncClient sqsClient,
+            ObjectMapper sqsMessageObjectMapper,
+            Scheduler sqsDeserialisationScheduler,
+            @Value("${qudini-reactive.sqs.acknowledgement-max-delay:50ms}") Duration acknowledgementMaxDelay,
+            @Value("${qudini-reactive.sqs.max-in-flight:0}") int defaultMaxInFlight,
+            @Value("${qudini-reactive.sqs.max-active-message-groups:0}") int defaultMaxActiveMessageGroups,
+            @Value("${qudini-reactive.sqs.max-receive-count:0}") int defaultMaxReceiveCount,
+            ObjectProvider<DeadLetterHandler> deadLetterHandler,
+            ObjectProvider<SqsMetrics> sqsMetrics,
+            @Value("${qudini-reactive.sqs.reset-visibility-on-drain:true}") boolean visibilityResetOnDrain,
+            @Value("${qudini-reactive.sqs.max-concurrent-handlers:0}") int maxConcurrentHandlers,
+            ReactiveLoggingContextCreator reactiveLoggingContextCreator,
+            @Value("${qudini-reactive.sqs.correlation-id-attribute-name:correlation_id}") String correlationIdAttributeName,
+            ObjectProvider<ClaimCheck> claimCheck,
+            ObjectProvider<DeduplicationStore> deduplicationStore
+    ) {
+        var settings = SqsMessageCheckerSettings
+                .builder()
+                .deserialisationScheduler(sqsDeserialisationScheduler)
+                .acknowledgementMaxDelay(acknowledgementMaxDelay)
+                .defaultMaxInFlight(defaultMaxInFlight)
+                .defaultMaxActiveMessageGroups(defaultMaxActiveMessageGroups)
+                .defaultMaxReceiveCount(defaultMaxReceiveCount)
+                .deadLetterHandler(Optional.ofNullable(deadLetterHandler.getIfAvailable()))
+                .metrics(sqsMetrics.getIfAvailable(SqsMetrics::noop))
+                .visibilityResetOnDrain(visibilityResetOnDrain)
+                .maxConcurrentHandlers(maxConcurrentHandlers)
+                .reactiveLoggingContextCreator(reactiveLoggingContextCreator)
+                .correlationIdAttributeName(correlationIdAttributeName)
+                .claimCheck(Optional.ofNullable(claimCheck.getIfAvailable()))
+                .deduplicationStore(Optional.ofNullable(deduplicationStore.getIfAvailable()))
+                .build();
+        return new DefaultSqsMessageChecker(sqsClient, sqsMessageObjectMapper, settings);
+    }
+
+    @Bean
+    public SqsListeners sqsListeners(
+            Collection<SqsListener<?>> listeners,
+            SqsAsyncClient sqsClient,
+            SqsMessageChecker sqsMessageChecker,
+            ReactiveLoggingContextCreator reactiveLoggingContextCreator,
+            @Value("${qudini-reactive.sqs.pollers:1}") int defaultPollers,
+            @Value("${qudini-reactive.sqs.max-pollers:0}") int defaultMaxPollers,
+            ObjectProvider<SqsMetrics> sqsMetrics,
+            @Value("${qudini-reactive.sqs.drain-timeout:30s}") Duration drainTimeout,
+            @Value("${qudini-reactive.sqs.queue-url-max-retries:10}") int queueUrlMaxRetries
+    ) {
+        var settings = SqsListenersSettings
+                .builder()
+                .defaultPollers(defaultPollers)
+                .defaultMaxPollers(defaultMaxPollers)
+                .metrics(sqsMetrics.getIfAvailable(SqsMetrics::noop))
+                .drainTimeout(drainTimeout)
+                .queueUrlMaxRetries(queueUrlMaxRetries)
+                .build();
+        return new SqsListeners(listeners, sqsClient, sqsMessageChecker, reactiveLoggingContextCreator, settings);
+    }
+
     @Bean
     @ConditionalOnMissingBean
-    public SqsMessageChecker sqsMessageChecker(SqsAsyncClient sqsClient, ObjectMapper sqsMessageObjectMapper) {
-        return new DefaultSqsMessageChecker(sqsClient, sqsMessageObjectMapper);
+    public SqsSenderFactory sqsSenderFactory(
+            SqsAsyncClient sqsClient,
+            ObjectMapper sqsMessageObjectMapper,
+            @Value("${qudini-reactive.sqs.sender.max-delay:50ms}") Duration maxDelay,
+            @Value("${qudini-reactive.sqs.correlation-id-attribute-name:correlation_id}") String correlationIdAttributeName,
+            ObjectProvider<ClaimCheck> claimCheck
+    ) {
+        return new SqsSenderFactory(sqsClient, sqsMessageObjectMapper, maxDelay, correlationIdAttributeName, Optional.ofNullable(claimCheck.getIfAvailable()));
     }
 
     @Bean
-    public SqsListeners sqsListeners(Collection<SqsListener<?>> listeners, SqsAsyncClient sqsClient, SqsMessageChecker sqsMessageChecker, ReactiveLoggingContextCreator reactiveLoggingContextCreator) {
-        return new SqsListeners(listeners, sqsClient, sqsMessageChecker, reactiveLoggingContextCreator);
+    @ConditionalOnBean(PayloadStore.class)
+    @ConditionalOnMissingBean
+    public ClaimCheck claimCheck(
+            PayloadStore payloadStore,
+            @Value("${qudini-reactive.sqs.claim-check.threshold:256KB}") DataSize threshold,
+            @Value("${qudini-reactive.sqs.claim-check.cache-size:10MB}") DataSize cacheSize
+    ) {
+        return new ClaimCheck(payloadStore, (int) threshold.toBytes(), cacheSize.toBytes());
+    }
+
+    @Bean
+    @ConditionalOnProperty("qudini-reactive.sqs.deduplication.enabled")
+    @ConditionalOnMissingBean
+    public DeduplicationStore deduplicationStore(
+            @Value("${qudini-reactive.sqs.deduplication.max-size:100000}") long maxSize,
+            @Value("${qudini-reactive.sqs.deduplication.time-to-live:1h}") Duration timeToLive
+    ) {
+        return new InMemoryDeduplicationStore(maxSize, timeToLive);
+    }
+
+    @Bean
+    @ConditionalOnBean(S3ObjectSource.class)
+    @ConditionalOnMissingBean
+    public ResumableS3ObjectReader resumableS3ObjectReader(
+            S3ObjectSource s3ObjectSource,
+            @Value("${qudini-reactive.sqs.s3.max-resumptions:3}") int maxResumptions,
+            @Value("${qudini-reactive.sqs.s3.resumption-backoff:1s}") Duration resumptionBackoff
+    ) {
+        return new ResumableS3ObjectReader(s3ObjectSource, maxResumptions, resumptionBackoff);
     }
 
     @EventListener(ApplicationReadyEvent.class)
@@ -48,4 +173,29 @@ public class ReactiveSqsAutoConfiguration {
                 .start();
     }
 
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(HealthIndicator.class)
+    static class SqsHealthConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(name = "sqsListenersHealthIndicator")
+        public HealthIndicator sqsListenersHealthIndicator(SqsListeners sqsListeners) {
+            return new SqsListenersHealthIndicator(sqsListeners);
+        }
+
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(MeterRegistry.class)
+    static class SqsMetricsConfiguration {
+
+        @Bean
+        @ConditionalOnBean(MeterRegistry.class)
+        @ConditionalOnMissingBean
+        public SqsMetrics sqsMetrics(MeterRegistry registry) {
+            return new MicrometerSqsMetrics(registry);
+        }
+
+    }
+
 }
@@ -2,8 +2,11 @@ package com.qudini.reactive.sqs;
 
 import com.qudini.reactive.sqs.message.Acknowledger;
 import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.sqs.model.Message;
 import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
 
+import java.util.Optional;
+
 /**
  * <p>Non-blocking SQS listener.</p>
  * <p>Example:</p>
@@ -41,6 +44,14 @@ public interface SqsListener<T> {
      */
     String getQueueName();
 
+    /**
+     * <p>The URL of the queue, to skip its lookup via <code>GetQueueUrl</code> at startup.</p>
+     * <p>Looked up from {@link #getQueueName()} if empty.</p>
+     */
+    default Optional<String> getQueueUrl() {
+        return Optional.empty();
+    }
+
     /**
      * <p>Builds the {@link ReceiveMessageRequest} for the given queue URL.</p>
      */
@@ -53,6 +64,109 @@ public interface SqsListener<T> {
                 .build();
     }
 
+    /**
+     * <p>Whether the visibility timeout of the messages being handled should be periodically extended
+     * (every half visibility timeout, as set by {@link #buildReceiveMessageRequest(String)}),
+     * until they are acknowledged or their handling terminates.</p>
+     * <p>Defaults to false. Requires the <code>sqs:ChangeMessageVisibility</code> permission on the queue.</p>
+     */
+    default boolean isVisibilityTimeoutExtended() {
+        return false;
+    }
+
+    /**
+     * <p>The number of concurrent long polling loops to run against the queue,
+     * i.e. the min number of them if {@link #getMaxPollers()} is higher.</p>
+     * <p>Defaults to the <code>qudini-reactive.sqs.pollers</code> property if empty.</p>
+     */
+    default Optional<Integer> getPollers() {
+        return Optional.empty();
+    }
+
+    /**
+     * <p>The max number of concurrent long polling loops to run against the queue:
+     * another one is started each time a receive comes back full, and one is stopped each time a receive comes back empty,
+     * between {@link #getPollers()} and this max.</p>
+     * <p>Defaults to the <code>qudini-reactive.sqs.max-pollers</code> property if empty (no scaling if not set).</p>
+     */
+    default Optional<Integer> getMaxPollers() {
+        return Optional.empty();
+    }
+
+    /**
+     * <p>The max number of messages of the queue being handled at the same time, across all its pollers.</p>
+     * <p>Pollers stop receiving messages while this budget is exhausted.</p>
+     * <p>Defaults to the <code>qudini-reactive.sqs.max-in-flight</code> property if empty (unbounded if not set).</p>
+     */
+    default Optional<Integer> getMaxInFlight() {
+        return Optional.empty();
+    }
+
+    /**
+     * <p>The max number of messages of the queue received per second, across all its pollers:
+     * pollers stop receiving messages until the rate limit allows it, e.g. to stay within the quotas of a third-party API.</p>
+     * <p>Unbounded if empty.</p>
+     */
+    default Optional<Double> getRateLimit() {
+        return Optional.empty();
+    }
+
+    /**
+     * <p>The max number of messages of the queue received at once under the {@link #getRateLimit()},
+     * e.g. after a pause.</p>
+     * <p>Defaults to the rate limit if empty, i.e. to a second worth of messages.</p>
+     */
+    default Optional<Integer> getRateLimitBurst() {
+        return Optional.empty();
+    }
+
+    /**
+     * <p>The share of the handlers this listener gets when competing with other listeners,
+     * once the <code>qudini-reactive.sqs.max-concurrent-handlers</code> are all in use:
+     * a listener with a weight of 3 gets 3 handlers for each one given to a listener with a weight of 1.</p>
+     */
+    default int getDispatchWeight() {
+        return 1;
+    }
+
+    /**
+     * <p>Whether the queue is a FIFO queue, in which case messages sharing the same message group ID are handled
+     * one after the other in the order they were received, while different groups are handled in parallel.</p>
+     * <p>Defaults to whether the queue name ends with <code>.fifo</code>, as required by SQS for FIFO queues.</p>
+     */
+    default boolean isFifo() {
+        return getQueueName().endsWith(".fifo");
+    }
+
+    /**
+     * <p>The max number of message groups of the FIFO queue being handled at the same time, across all its pollers.</p>
+     * <p>Defaults to the <code>qudini-reactive.sqs.max-active-message-groups</code> property if empty (unbounded if not set).</p>
+     */
+    default Optional<Integer> getMaxActiveMessageGroups() {
+        return Optional.empty();
+    }
+
+    /**
+     * <p>The max number of times a message can be received (as reported by its <code>ApproximateReceiveCount</code>)
+     * before it's given to the {@link DeadLetterHandler} instead of this listener.</p>
+     * <p>Defaults to the <code>qudini-reactive.sqs.max-receive-count</code> property if empty (unbounded if not set).</p>
+     */
+    default Optional<Integer> getMaxReceiveCount() {
+        return Optional.empty();
+    }
+
+    /**
+     * <p>The key identifying the duplicates of the given message, when a
+     * {@link com.qudini.reactive.sqs.dedup.DeduplicationStore} is registered:
+     * a message whose key has already been handled is acknowledged without being given to this listener.</p>
+     * <p>Defaults to the message id, which only catches the redeliveries of a same message,
+     * override it to also catch the messages sent several times (e.g. with a business id found in the message attributes).
+     * Messages with an empty key aren't deduplicated.</p>
+     */
+    default Optional<String> getDeduplicationKey(Message message) {
+        return Optional.ofNullable(message.messageId());
+    }
+
     /**
      * <p>The type that must be used by Jackson when deserialising an incoming SQS message.</p>
      */
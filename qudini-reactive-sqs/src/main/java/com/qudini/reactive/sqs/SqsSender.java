@@ -0,0 +1,48 @@
+package com.qudini.reactive.sqs;
+
+import com.qudini.reactive.sqs.sender.SentMessage;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+
+import java.util.function.Consumer;
+
+/**
+ * <p>Sends messages of the given type to a queue, serialised with the <code>sqsMessageObjectMapper</code>.</p>
+ * <p>Instances are created via {@link com.qudini.reactive.sqs.sender.SqsSenderFactory}.</p>
+ * <p>Example:</p>
+ * <pre><code>
+ * &#64;Component
+ * public class YourPublisher {
+ *
+ *     private final SqsSender&lt;YourMessage&gt; sender;
+ *
+ *     public YourPublisher(SqsSenderFactory sqsSenderFactory, &#64;Value("${your-queue-url}") String queueUrl) {
+ *         this.sender = sqsSenderFactory.create(queueUrl);
+ *     }
+ *
+ *     public Mono&lt;Void&gt; publish(YourMessage message) {
+ *         return sender.send(message).then();
+ *     }
+ *
+ * }
+ * </code></pre>
+ */
+public interface SqsSender<T> {
+
+    /**
+     * <p>Sends the given message.</p>
+     * <p>The returned mono fails if this specific message could not be sent, even if the rest of its batch succeeded.</p>
+     */
+    default Mono<SentMessage> send(T message) {
+        return send(message, entry -> {
+        });
+    }
+
+    /**
+     * <p>Sends the given message, after having applied the given customiser to its entry,
+     * e.g. to set its <code>MessageGroupId</code> or its delay.</p>
+     * <p>The returned mono fails if this specific message could not be sent, even if the rest of its batch succeeded.</p>
+     */
+    Mono<SentMessage> send(T message, Consumer<SendMessageBatchRequestEntry.Builder> customiser);
+
+}
@@ -0,0 +1,22 @@
+package com.qudini.reactive.sqs.dedup;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>Remembers the messages already handled, so that their redeliveries are acknowledged without being handled again.</p>
+ * <p>{@link InMemoryDeduplicationStore} only deduplicates the messages received by the current instance,
+ * implement this interface with a shared store (e.g. Redis, DynamoDB) to deduplicate across instances.</p>
+ */
+public interface DeduplicationStore {
+
+    /**
+     * <p>Whether a message of the given queue with the given deduplication key has already been handled.</p>
+     */
+    Mono<Boolean> contains(String queueUrl, String key);
+
+    /**
+     * <p>Marks the message of the given queue with the given deduplication key as handled.</p>
+     */
+    Mono<Void> add(String queueUrl, String key);
+
+}
@@ -0,0 +1,45 @@
+package com.qudini.reactive.sqs.dedup;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * <p>A {@link DeduplicationStore} keeping the keys in a local cache, bounded by the given max size,
+ * and forgetting them once the given time to live has elapsed since they were added.</p>
+ */
+public final class InMemoryDeduplicationStore implements DeduplicationStore {
+
+    private final Cache<List<String>, Boolean> keys;
+
+    public InMemoryDeduplicationStore(long maxSize, Duration timeToLive) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The deduplication max size must be positive, got " + maxSize);
+        }
+        if (timeToLive.isZero() || timeToLive.isNegative()) {
+            throw new IllegalArgumentException("The deduplication time to live must be positive, got " + timeToLive);
+        }
+        this.keys = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(timeToLive).build();
+    }
+
+    @Override
+    public Mono<Boolean> contains(String queueUrl, String key) {
+        return Mono.fromSupplier(() -> keys.getIfPresent(List.of(queueUrl, key)) != null);
+    }
+
+    @Override
+    public Mono<Void> add(String queueUrl, String key) {
+        return Mono.fromRunnable(() -> keys.put(List.of(queueUrl, key), true));
+    }
+
+    /**
+     * <p>The approximate number of keys currently stored.</p>
+     */
+    public long getStoredKeys() {
+        return keys.size();
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.qudini.reactive.sqs.listener;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static reactor.core.publisher.Sinks.EmitFailureHandler.busyLooping;
+
+/**
+ * <p>Scales the number of pollers of a queue between its min and max, depending on how full the receives come back.</p>
+ * <p>A full receive starts another poller, as the queue is likely to hold more messages than the current pollers can fetch.
+ * An empty receive stops the poller that issued it, unless the min is reached, so that idle queues
+ * end up being long polled by as few pollers as possible.</p>
+ */
+@Slf4j
+public final class AdaptivePollers {
+
+    private static final Duration EMISSION_TIMEOUT = Duration.ofSeconds(1);
+
+    private final String queueUrl;
+
+    private final int minPollers;
+
+    private final int maxPollers;
+
+    private final AtomicInteger activePollers = new AtomicInteger(0);
+
+    private final AtomicInteger nextPoller = new AtomicInteger(0);
+
+    private final Sinks.Many<Integer> startedPollers = Sinks.many().unicast().onBackpressureBuffer();
+
+    public AdaptivePollers(String queueUrl, int minPollers, int maxPollers) {
+        if (minPollers < 1) {
+            throw new IllegalArgumentException("At least one poller is required for queue " + queueUrl + ", got " + minPollers);
+        }
+        this.queueUrl = queueUrl;
+        this.minPollers = minPollers;
+        this.maxPollers = Math.max(minPollers, maxPollers);
+    }
+
+    /**
+     * <p>Starts the min number of pollers, then emits the index of each poller to run, as they get started.</p>
+     */
+    public Flux<Integer> start() {
+        for (var poller = 0; poller < minPollers; poller++) {
+            tryStartPoller();
+        }
+        return startedPollers.asFlux();
+    }
+
+    /**
+     * <p>Scales the pollers given the number of messages a poller just received,
+     * and returns whether that poller should keep polling.</p>
+     */
+    public boolean onReceived(int receivedMessages, int maxNumberOfMessages) {
+        if (receivedMessages >= maxNumberOfMessages) {
+            if (tryStartPoller()) {
+                log.debug("Full receive from queue {}, scaled up to {} poller(s)", queueUrl, activePollers.get());
+            }
+            return true;
+        } else if (receivedMessages == 0 && tryStopPoller()) {
+            log.debug("Empty receive from queue {}, scaled down to {} poller(s)", queueUrl, activePollers.get());
+            return false;
+        } else {
+            return true;
+        }
+    }
+
+    /**
+     * <p>Stops starting new pollers, so that the polling completes once the running ones have stopped.</p>
+     */
+    public void stop() {
+        startedPollers.emitComplete(busyLooping(EMISSION_TIMEOUT));
+    }
+
+    /**
+     * <p>The number of pollers currently running.</p>
+     */
+    public int getActivePollers() {
+        return activePollers.get();
+    }
+
+    public int getMinPollers() {
+        return minPollers;
+    }
+
+    public int getMaxPollers() {
+        return maxPollers;
+    }
+
+    private boolean tryStartPoller() {
+        var previousPollers = activePollers.getAndUpdate(pollers -> pollers < maxPollers ? pollers + 1 : pollers);
+        if (previousPollers >= maxPollers) {
+            return false;
+        }
+        startedPollers.emitNext(nextPoller.getAndIncrement(), busyLooping(EMISSION_TIMEOUT));
+        return true;
+    }
+
+    private boolean tryStopPoller() {
+        var previousPollers = activePollers.getAndUpdate(pollers -> pollers > minPollers ? pollers - 1 : pollers);
+        return previousPollers > minPollers;
+    }
+
+}
@@ -4,12 +4,15 @@ import com.qudini.reactive.logging.Log;
 import com.qudini.reactive.logging.ReactiveLoggingContextCreator;
 import com.qudini.reactive.sqs.SqsListener;
 import com.qudini.reactive.sqs.message.SqsMessageChecker;
+import com.qudini.reactive.sqs.metrics.SqsMetrics;
 import com.qudini.utils.MoreTuples;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.function.Tuples;
 import reactor.util.retry.Retry;
 import software.amazon.awssdk.services.sqs.SqsAsyncClient;
 import software.amazon.awssdk.services.sqs.model.GetQueueUrlRequest;
@@ -18,15 +21,28 @@ import software.amazon.awssdk.services.sqs.model.GetQueueUrlResponse;
 import java.time.Duration;
 import java.util.Collection;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.qudini.utils.MoreTuples.onBoth;
-import static com.qudini.utils.MoreTuples.onLeftWhen;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.toUnmodifiableMap;
 
 @Slf4j
 public final class SqsListeners {
 
+    private static final Duration POLL_MIN_BACKOFF = Duration.ofSeconds(1);
+
+    private static final Duration POLL_MAX_BACKOFF = Duration.ofMinutes(1);
+
+    private static final Duration QUEUE_URL_MIN_BACKOFF = Duration.ofSeconds(1);
+
+    private static final Duration QUEUE_URL_MAX_BACKOFF = Duration.ofMinutes(1);
+
     private final Map<String, SqsListener<?>> listeners;
 
     private final SqsAsyncClient sqsClient;
@@ -35,37 +51,91 @@ public final class SqsListeners {
 
     private final ReactiveLoggingContextCreator reactiveLoggingContextCreator;
 
+    private final int defaultPollers;
+
+    private final int defaultMaxPollers;
+
+    private final SqsMetrics metrics;
+
+    private final Duration drainTimeout;
+
+    private final int queueUrlMaxRetries;
+
+    private final Map<String, AdaptivePollers> pollers = new ConcurrentHashMap<>();
+
+    private final Map<String, String> queueUrls = new ConcurrentHashMap<>();
+
+    private final Set<String> pollingQueues = ConcurrentHashMap.newKeySet();
+
     private final Flux<Void> flux;
 
     private Disposable disposable;
 
+    private CountDownLatch drained;
+
+    private volatile Sinks.Empty<Void> drainStarted = Sinks.empty();
+
+    private volatile boolean draining;
+
     public SqsListeners(Collection<SqsListener<?>> listeners, SqsAsyncClient sqsClient, SqsMessageChecker sqsMessageChecker, ReactiveLoggingContextCreator reactiveLoggingContextCreator) {
+        this(listeners, sqsClient, sqsMessageChecker, reactiveLoggingContextCreator, SqsListenersSettings.builder().build());
+    }
+
+    public SqsListeners(Collection<SqsListener<?>> listeners, SqsAsyncClient sqsClient, SqsMessageChecker sqsMessageChecker, ReactiveLoggingContextCreator reactiveLoggingContextCreator, SqsListenersSettings settings) {
         this.listeners = listeners.stream().collect(toUnmodifiableMap(SqsListener::getQueueName, identity()));
         this.sqsClient = sqsClient;
         this.sqsMessageChecker = sqsMessageChecker;
         this.reactiveLoggingContextCreator = reactiveLoggingContextCreator;
+        this.defaultPollers = settings.getDefaultPollers();
+        this.defaultMaxPollers = settings.getDefaultMaxPollers();
+        this.metrics = settings.getMetrics();
+        this.drainTimeout = settings.getDrainTimeout();
+        this.queueUrlMaxRetries = settings.getQueueUrlMaxRetries();
+        if (queueUrlMaxRetries < 0) {
+            throw new IllegalArgumentException("The queue URL max retries must not be negative, got " + queueUrlMaxRetries);
+        }
+        this.listeners.values().forEach(this::getPollers);
+        this.listeners.values().forEach(SqsListeners::checkDispatchWeight);
         this.flux = prepare();
     }
 
     public synchronized void start() {
         if (disposable == null) {
-            this.disposable = flux.subscribe();
+            var drained = new CountDownLatch(1);
+            this.draining = false;
+            this.drainStarted = Sinks.empty();
+            this.drained = drained;
+            // a previous stop may have stopped the receiving:
+            sqsMessageChecker.startReceiving();
+            this.disposable = flux.doFinally(signal -> drained.countDown()).subscribe();
             log.info("SQS listeners started");
         } else {
             throw new IllegalStateException("SQS listeners already started");
         }
     }
 
+    /**
+     * <p>Resolves the queue URLs concurrently, each queue starting its polling as soon as its own URL is known.</p>
+     */
     private Flux<Void> prepare() {
         return Mono
                 .just(listeners)
                 .flatMapIterable(Map::entrySet)
                 .map(MoreTuples::fromEntry)
-                .flatMap(onLeftWhen(this::getQueueUrl))
-                .flatMap(onBoth(this::startPolling));
+                .flatMap(onBoth((queueName, listener) -> getQueueUrl(queueName, listener).map(queueUrl -> Tuples.of(queueUrl, listener))), Math.max(1, listeners.size()))
+                .flatMap(onBoth(this::startPolling), Math.max(1, listeners.size()));
     }
 
-    private Mono<String> getQueueUrl(String queueName) {
+    /**
+     * <p>The URL of the given queue, either set by the listener, already resolved by a previous start,
+     * or looked up via <code>GetQueueUrl</code>, retried with an exponential backoff up to the max retries.</p>
+     * <p>Completes empty if it still fails, or as soon as draining starts: the queue isn't polled then.</p>
+     */
+    private Mono<String> getQueueUrl(String queueName, SqsListener<?> listener) {
+        var knownQueueUrl = listener.getQueueUrl().or(() -> Optional.ofNullable(queueUrls.get(queueName)));
+        if (knownQueueUrl.isPresent()) {
+            return Mono.just(knownQueueUrl.get());
+        }
         return Mono
                 .fromFuture(() -> {
                     var getQueueUrlRequest = GetQueueUrlRequest.builder()
@@ -74,22 +144,109 @@ public final class SqsListeners {
                     return sqsClient.getQueueUrl(getQueueUrlRequest);
                 })
                 .map(GetQueueUrlResponse::queueUrl)
-                .doOnEach(Log.onError(error -> log.error("Unable to get the URL of the queue named {}, long polling will not start", queueName, error)))
-                .onErrorResume(error -> Mono.empty());
+                .doOnEach(Log.onError(error -> log.error("Unable to get the URL of the queue named {}, retrying", queueName, error)))
+                .retryWhen(Retry
+                        .backoff(queueUrlMaxRetries, QUEUE_URL_MIN_BACKOFF)
+                        .maxBackoff(QUEUE_URL_MAX_BACKOFF)
+                        .filter(error -> !draining))
+                .takeUntilOther(onDrainStarted())
+                .doOnNext(queueUrl -> queueUrls.put(queueName, queueUrl))
+                .onErrorResume(error -> {
+                    if (!draining) {
+                        log.error("Unable to get the URL of the queue named {} after {} retries, it won't be polled until restarted", queueName, queueUrlMaxRetries, error);
+                    }
+                    return Mono.empty();
+                });
     }
 
     private Flux<Void> startPolling(String queueUrl, SqsListener<?> listener) {
+        var adaptivePollers = new AdaptivePollers(queueUrl, getPollers(listener), listener.getMaxPollers().orElse(defaultMaxPollers));
+        var maxNumberOfMessages = Optional.ofNullable(listener.buildReceiveMessageRequest(queueUrl).maxNumberOfMessages()).orElse(1);
+        var queueName = listener.getQueueName();
+        if (pollers.put(queueName, adaptivePollers) == null) {
+            // registered on the first start only, reading the pollers of the current start:
+            metrics.registerPollers(queueUrl, () -> getActivePollers(queueName).orElse(0));
+        }
+        log.info("Starting {} to {} poller(s) for queue {}", adaptivePollers.getMinPollers(), adaptivePollers.getMaxPollers(), queueUrl);
+        return adaptivePollers
+                .start()
+                .flatMap(poller -> poll(queueUrl, listener, adaptivePollers, poller, maxNumberOfMessages), adaptivePollers.getMaxPollers())
+                .doOnSubscribe(subscription -> pollingQueues.add(queueName))
+                .doFinally(signal -> pollingQueues.remove(queueName));
+    }
+
+    private int getPollers(SqsListener<?> listener) {
+        var pollers = listener.getPollers().orElse(defaultPollers);
+        if (pollers < 1) {
+            throw new IllegalArgumentException("At least one poller is required for queue " + listener.getQueueName() + ", got " + pollers);
+        }
+        return pollers;
+    }
+
+    private static void checkDispatchWeight(SqsListener<?> listener) {
+        var dispatchWeight = listener.getDispatchWeight();
+        if (dispatchWeight < 1) {
+            throw new IllegalArgumentException("The dispatch weight of queue " + listener.getQueueName() + " must be positive, got " + dispatchWeight);
+        }
+    }
+
+    private Mono<Void> poll(String queueUrl, SqsListener<?> listener, AdaptivePollers adaptivePollers, int poller, int maxNumberOfMessages) {
+        var keepPolling = new AtomicBoolean(true);
         return sqsMessageChecker
                 .checkForMessages(queueUrl, listener)
-                .doOnEach(Log.onError(error -> log.error("An error occurred while checking for messages for queue {}, retrying", queueUrl, error)))
-                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofMinutes(1)))
+                .doOnNext(receivedMessages -> keepPolling.set(adaptivePollers.onReceived(receivedMessages, maxNumberOfMessages)))
+                .doOnEach(Log.onError(error -> log.error("An error occurred while checking for messages for queue {} (poller #{}), retrying", queueUrl, poller, error)))
+                .doOnError(error -> metrics.recordRetry(queueUrl))
+                .retryWhen(pollRetry())
+                .onErrorResume(error -> draining, error -> Mono.empty())
                 .contextWrite(context -> context.putAll(reactiveLoggingContextCreator.create()))
-                .repeat();
+                .repeat(() -> keepPolling.get() && !draining)
+                .doOnComplete(() -> log.debug("Poller #{} of queue {} scaled down", poller, queueUrl))
+                .doOnCancel(() -> log.debug("Poller #{} of queue {} stopped", poller, queueUrl))
+                .then();
+    }
+
+    /**
+     * <p>Retries the polling with an exponential backoff until draining starts, cutting short the backoff in progress if any.</p>
+     * <p>Only the backoffs are cut short, so that the messages being handled aren't cancelled by the draining.</p>
+     */
+    private Retry pollRetry() {
+        var backoff = Retry
+                .backoff(Long.MAX_VALUE, POLL_MIN_BACKOFF)
+                .maxBackoff(POLL_MAX_BACKOFF)
+                .filter(error -> !draining);
+        return Retry.from(retrySignals -> retrySignals.concatMap(retrySignal -> backoff
+                .generateCompanion(Flux.just(retrySignal))
+                .takeUntilOther(onDrainStarted())
+                .switchIfEmpty(Mono.error(retrySignal.failure()))));
+    }
+
+    private Mono<Boolean> onDrainStarted() {
+        return Mono.defer(() -> drainStarted.asMono()).then(Mono.just(true));
+    }
+
+    /**
+     * <p>The number of pollers currently running for the given queue name, empty if its polling hasn't started.</p>
+     */
+    public Optional<Integer> getActivePollers(String queueName) {
+        return Optional.ofNullable(pollers.get(queueName)).map(AdaptivePollers::getActivePollers);
+    }
+
+    /**
+     * <p>Whether each listened queue, by name, is currently being polled
+     * (i.e. its URL has been resolved and the listeners haven't been stopped).</p>
+     */
+    public Map<String, Boolean> getPollingQueues() {
+        return listeners
+                .keySet()
+                .stream()
+                .collect(toUnmodifiableMap(identity(), pollingQueues::contains));
     }
 
     @PreDestroy
     public synchronized void stop() {
         if (null != disposable && !disposable.isDisposed()) {
+            drain();
             disposable.dispose();
             log.info("SQS listeners stopped");
         } else {
@@ -98,4 +255,25 @@ public final class SqsListeners {
         disposable = null;
     }
 
+    /**
+     * <p>Stops receiving new messages, then waits for the ones being handled, up to the drain timeout.</p>
+     */
+    private void drain() {
+        if (drainTimeout.isZero() || drainTimeout.isNegative()) {
+            return;
+        }
+        log.info("Draining SQS listeners");
+        draining = true;
+        drainStarted.tryEmitEmpty();
+        sqsMessageChecker.stopReceiving();
+        pollers.values().forEach(AdaptivePollers::stop);
+        try {
+            if (!drained.await(drainTimeout.toMillis(), MILLISECONDS)) {
+                log.warn("SQS listeners not drained after {}, cancelling the remaining handlers", drainTimeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
 }
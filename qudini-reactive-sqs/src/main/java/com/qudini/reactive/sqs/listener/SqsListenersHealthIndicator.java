@@ -0,0 +1,31 @@
+package com.qudini.reactive.sqs.listener;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+
+/**
+ * <p>Reports whether all the listened queues are being polled, e.g. to be included in the readiness group:
+ * out of service while some queue URLs are still being resolved, or once the listeners are stopped.</p>
+ * <p>Details whether each queue, by name, is being polled.</p>
+ */
+public final class SqsListenersHealthIndicator extends AbstractHealthIndicator {
+
+    private final SqsListeners sqsListeners;
+
+    public SqsListenersHealthIndicator(SqsListeners sqsListeners) {
+        super("SQS listeners health check failed");
+        this.sqsListeners = sqsListeners;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        var pollingQueues = sqsListeners.getPollingQueues();
+        if (pollingQueues.containsValue(false)) {
+            builder.outOfService();
+        } else {
+            builder.up();
+        }
+        builder.withDetails(pollingQueues);
+    }
+
+}
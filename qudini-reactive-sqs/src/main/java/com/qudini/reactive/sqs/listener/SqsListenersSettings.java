@@ -0,0 +1,43 @@
+package com.qudini.reactive.sqs.listener;
+
+import com.qudini.reactive.sqs.metrics.SqsMetrics;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+
+/**
+ * <p>The tuning of {@link SqsListeners}, each setting defaulting to the default of its
+ * <code>qudini-reactive.sqs.*</code> property.</p>
+ */
+@Value
+@Builder(toBuilder = true)
+public class SqsListenersSettings {
+
+    /**
+     * <p>The number of pollers of the listeners that don't override it.</p>
+     */
+    @Builder.Default
+    int defaultPollers = 1;
+
+    /**
+     * <p>The max number of pollers of the listeners that don't override it, 0 meaning no scaling.</p>
+     */
+    int defaultMaxPollers;
+
+    @Builder.Default
+    SqsMetrics metrics = SqsMetrics.noop();
+
+    /**
+     * <p>How many times a failing <code>GetQueueUrl</code> call is retried before giving up on the queue.</p>
+     */
+    @Builder.Default
+    int queueUrlMaxRetries = 10;
+
+    /**
+     * <p>How long stopping waits for the messages being handled, 0 meaning no wait.</p>
+     */
+    @Builder.Default
+    Duration drainTimeout = Duration.ofSeconds(30);
+
+}
@@ -0,0 +1,238 @@
+package com.qudini.reactive.sqs.message;
+
+import com.qudini.reactive.sqs.metrics.SqsMetrics;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.SqsException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+
+/**
+ * <p>Coalesces the acknowledgements of a queue into <code>DeleteMessageBatch</code> calls.</p>
+ * <p>A batch is flushed as soon as it reaches {@value #MAX_BATCH_SIZE} entries (the SQS limit),
+ * or when its oldest entry has been waiting for the configured max delay.</p>
+ * <p>The size of each batch and what triggered its flush, as well as the outcome of each deletion, are recorded via {@link SqsMetrics}.</p>
+ */
+@Slf4j
+public final class AcknowledgementAggregator implements Disposable {
+
+    public static final int MAX_BATCH_SIZE = 10;
+
+    private final SqsAsyncClient sqsClient;
+
+    private final String queueUrl;
+
+    private final SqsMetrics metrics;
+
+    private final Sinks.Many<PendingAcknowledgement> pendingAcknowledgements = Sinks.many().unicast().onBackpressureBuffer();
+
+    private final Disposable flushes;
+
+    private final Sinks.Empty<Void> flushed = Sinks.empty();
+
+    private final LongAdder sizeFlushes = new LongAdder();
+
+    private final LongAdder delayFlushes = new LongAdder();
+
+    private final LongAdder acknowledgedMessages = new LongAdder();
+
+    private final LongAdder failedMessages = new LongAdder();
+
+    public AcknowledgementAggregator(SqsAsyncClient sqsClient, String queueUrl, Duration maxDelay, SqsMetrics metrics) {
+        this.sqsClient = sqsClient;
+        this.queueUrl = queueUrl;
+        this.metrics = metrics;
+        this.flushes = pendingAcknowledgements
+                .asFlux()
+                .bufferTimeout(MAX_BATCH_SIZE, maxDelay, true)
+                .flatMap(this::flush)
+                .doFinally(signal -> flushed.tryEmitEmpty())
+                .subscribe();
+    }
+
+    /**
+     * <p>Deletes the message identified by the given receipt handle, as part of the next batch.</p>
+     * <p>The returned mono fails if this specific entry could not be deleted, even if the rest of the batch succeeded,
+     * or straight away if the aggregator has been closed.</p>
+     */
+    public Mono<Void> acknowledge(String receiptHandle) {
+        return Mono.defer(() -> {
+            var pendingAcknowledgement = new PendingAcknowledgement(receiptHandle, System.nanoTime(), Sinks.one());
+            if (!emit(pendingAcknowledgement)) {
+                return Mono.error(new IllegalStateException("The acknowledgements of queue " + queueUrl + " are closed"));
+            }
+            return pendingAcknowledgement.getResult().asMono();
+        });
+    }
+
+    /**
+     * <p>Queues the given acknowledgement for the next batch, the emissions being serialised
+     * so that concurrent acknowledgements wait for their turn instead of busy looping.</p>
+     * <p>Returns false if the aggregator doesn't accept acknowledgements anymore (closed or disposed).</p>
+     */
+    private boolean emit(PendingAcknowledgement pendingAcknowledgement) {
+        synchronized (pendingAcknowledgements) {
+            return pendingAcknowledgements.tryEmitNext(pendingAcknowledgement).isSuccess();
+        }
+    }
+
+    /**
+     * <p>The number of batches flushed because they were full.</p>
+     */
+    public long getSizeFlushes() {
+        return sizeFlushes.sum();
+    }
+
+    /**
+     * <p>The number of batches flushed because their max delay elapsed.</p>
+     */
+    public long getDelayFlushes() {
+        return delayFlushes.sum();
+    }
+
+    /**
+     * <p>The number of messages successfully deleted.</p>
+     */
+    public long getAcknowledgedMessages() {
+        return acknowledgedMessages.sum();
+    }
+
+    /**
+     * <p>The number of messages that could not be deleted.</p>
+     */
+    public long getFailedMessages() {
+        return failedMessages.sum();
+    }
+
+    /**
+     * <p>Flushes the pending acknowledgements, then stops accepting new ones: acknowledging fails afterwards.</p>
+     */
+    public void close() {
+        synchronized (pendingAcknowledgements) {
+            pendingAcknowledgements.tryEmitComplete();
+        }
+    }
+
+    /**
+     * <p>Same as {@link #close()}, but completes once the pending acknowledgements have actually been flushed.</p>
+     */
+    public Mono<Void> drain() {
+        return Mono.defer(() -> {
+            close();
+            return flushed.asMono();
+        });
+    }
+
+    @Override
+    public void dispose() {
+        flushes.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return flushes.isDisposed();
+    }
+
+    private Mono<Void> flush(List<PendingAcknowledgement> batch) {
+        var full = batch.size() == MAX_BATCH_SIZE;
+        if (full) {
+            sizeFlushes.increment();
+        } else {
+            delayFlushes.increment();
+        }
+        metrics.recordAcknowledgementBatch(queueUrl, batch.size(), full);
+        return Mono
+                .fromFuture(() -> sqsClient.deleteMessageBatch(buildRequest(batch)))
+                .doOnNext(response -> complete(batch, response))
+                .doOnError(error -> fail(batch, error))
+                .doFinally(signal -> failMissing(batch))
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    private DeleteMessageBatchRequest buildRequest(List<PendingAcknowledgement> batch) {
+        var entries = IntStream
+                .range(0, batch.size())
+                .mapToObj(index -> DeleteMessageBatchRequestEntry
+                        .builder()
+                        .id(String.valueOf(index))
+                        .receiptHandle(batch.get(index).getReceiptHandle())
+                        .build())
+                .toList();
+        return DeleteMessageBatchRequest
+                .builder()
+                .queueUrl(queueUrl)
+                .entries(entries)
+                .build();
+    }
+
+    private void complete(List<PendingAcknowledgement> batch, DeleteMessageBatchResponse response) {
+        response.successful().forEach(entry -> succeed(batch, entry));
+        response.failed().forEach(entry -> fail(batch, entry));
+    }
+
+    private void succeed(List<PendingAcknowledgement> batch, DeleteMessageBatchResultEntry entry) {
+        acknowledgedMessages.increment();
+        var pendingAcknowledgement = batch.get(Integer.parseInt(entry.id()));
+        recordAcknowledgement(pendingAcknowledgement, true);
+        pendingAcknowledgement.getResult().tryEmitEmpty();
+    }
+
+    private void fail(List<PendingAcknowledgement> batch, BatchResultErrorEntry entry) {
+        failedMessages.increment();
+        var error = SqsException
+                .builder()
+                .message("Unable to delete message from queue " + queueUrl + ": " + entry.message())
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode(entry.code()).errorMessage(entry.message()).build())
+                .build();
+        var pendingAcknowledgement = batch.get(Integer.parseInt(entry.id()));
+        recordAcknowledgement(pendingAcknowledgement, false);
+        pendingAcknowledgement.getResult().tryEmitError(error);
+    }
+
+    private void fail(List<PendingAcknowledgement> batch, Throwable error) {
+        log.debug("Unable to delete a batch of {} messages from queue {}", batch.size(), queueUrl, error);
+        failedMessages.add(batch.size());
+        batch.forEach(pendingAcknowledgement -> {
+            recordAcknowledgement(pendingAcknowledgement, false);
+            pendingAcknowledgement.getResult().tryEmitError(error);
+        });
+    }
+
+    private void failMissing(List<PendingAcknowledgement> batch) {
+        batch.forEach(pendingAcknowledgement -> {
+            var error = new IllegalStateException("No deletion result returned by SQS for a message of queue " + queueUrl);
+            if (pendingAcknowledgement.getResult().tryEmitError(error).isSuccess()) {
+                recordAcknowledgement(pendingAcknowledgement, false);
+            }
+        });
+    }
+
+    private void recordAcknowledgement(PendingAcknowledgement pendingAcknowledgement, boolean success) {
+        metrics.recordAcknowledgement(queueUrl, Duration.ofNanos(System.nanoTime() - pendingAcknowledgement.getStart()), success);
+    }
+
+    @Value
+    private static class PendingAcknowledgement {
+
+        String receiptHandle;
+        long start;
+        Sinks.One<Void> result;
+
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.qudini.reactive.sqs.message;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface BatchAcknowledger {
+
+    /**
+     * <p>Acknowledges all the messages of the batch.</p>
+     */
+    Mono<Void> acknowledge();
+
+    /**
+     * <p>Acknowledges the messages of the batch at the given indexes only.</p>
+     */
+    Mono<Void> acknowledge(Collection<Integer> indexes);
+
+    /**
+     * <p>Acknowledges a batch by acknowledging its messages individually.</p>
+     */
+    static BatchAcknowledger of(List<Acknowledger> acknowledgers) {
+        return new BatchAcknowledger() {
+
+            @Override
+            public Mono<Void> acknowledge() {
+                return Flux
+                        .fromIterable(acknowledgers)
+                        .flatMap(Acknowledger::acknowledge)
+                        .then();
+            }
+
+            @Override
+            public Mono<Void> acknowledge(Collection<Integer> indexes) {
+                return Flux
+                        .fromIterable(indexes)
+                        .map(acknowledgers::get)
+                        .flatMap(Acknowledger::acknowledge)
+                        .then();
+            }
+
+        };
+    }
+
+}
@@ -1,60 +1,683 @@
 package com.qudini.reactive.sqs.message;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.qudini.reactive.logging.ReactiveLoggingContextCreator;
+import com.qudini.reactive.sqs.BatchSqsListener;
+import com.qudini.reactive.sqs.DeadLetterHandler;
 import com.qudini.reactive.sqs.SqsListener;
-import lombok.SneakyThrows;
+import com.qudini.reactive.sqs.dedup.DeduplicationStore;
+import com.qudini.reactive.sqs.metrics.SqsMetrics;
+import com.qudini.reactive.sqs.payload.ClaimCheck;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.ContextView;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 import software.amazon.awssdk.services.sqs.SqsAsyncClient;
-import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
 import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
 import software.amazon.awssdk.services.sqs.model.ReceiveMessageResponse;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+import static software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName.ALL;
+import static software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName.APPROXIMATE_RECEIVE_COUNT;
+import static software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName.MESSAGE_GROUP_ID;
+import static software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName.SENT_TIMESTAMP;
+
+@Slf4j
 public final class DefaultSqsMessageChecker implements SqsMessageChecker {
 
+    private static final Duration ACKNOWLEDGEMENTS_DRAIN_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final String ALL_MESSAGE_ATTRIBUTES = "All";
+
+    private static final String ALL_MESSAGE_ATTRIBUTES_PATTERN = ".*";
+
     private final SqsAsyncClient sqsClient;
 
     private final ObjectMapper objectMapper;
 
+    private final Scheduler deserialisationScheduler;
+
+    private final Duration acknowledgementMaxDelay;
+
+    private final int defaultMaxInFlight;
+
+    private final int defaultMaxActiveMessageGroups;
+
+    private final int defaultMaxReceiveCount;
+
+    private final Optional<DeadLetterHandler> deadLetterHandler;
+
+    private final SqsMetrics metrics;
+
+    private final boolean visibilityResetOnDrain;
+
+    private final Optional<WeightedDispatcher> dispatcher;
+
+    private final ReactiveLoggingContextCreator reactiveLoggingContextCreator;
+
+    private final String correlationIdAttributeName;
+
+    private final Optional<ClaimCheck> claimCheck;
+
+    private final Optional<DeduplicationStore> deduplicationStore;
+
+    private volatile Sinks.Empty<Void> receivingStopped = Sinks.empty();
+
+    private volatile boolean receiving = true;
+
+    private final Map<Class<?>, ObjectReader> objectReaders = new ConcurrentHashMap<>();
+
+    private final Map<String, AcknowledgementAggregator> acknowledgementAggregators = new ConcurrentHashMap<>();
+
+    private final Map<String, InFlightLimiter> inFlightLimiters = new ConcurrentHashMap<>();
+
+    private final Map<String, InFlightLimiter> messageGroupLimiters = new ConcurrentHashMap<>();
+
+    private final Map<String, Optional<RateLimiter>> rateLimiters = new ConcurrentHashMap<>();
+
+    private final Map<String, VisibilityExtender> visibilityExtenders = new ConcurrentHashMap<>();
+
     public DefaultSqsMessageChecker(SqsAsyncClient sqsClient, ObjectMapper objectMapper) {
+        this(sqsClient, objectMapper, SqsMessageCheckerSettings.builder().build());
+    }
+
+    public DefaultSqsMessageChecker(SqsAsyncClient sqsClient, ObjectMapper objectMapper, SqsMessageCheckerSettings settings) {
         this.sqsClient = sqsClient;
         this.objectMapper = objectMapper;
+        this.deserialisationScheduler = settings.getDeserialisationScheduler();
+        this.acknowledgementMaxDelay = settings.getAcknowledgementMaxDelay();
+        this.defaultMaxInFlight = settings.getDefaultMaxInFlight();
+        this.defaultMaxActiveMessageGroups = settings.getDefaultMaxActiveMessageGroups();
+        this.defaultMaxReceiveCount = settings.getDefaultMaxReceiveCount();
+        this.deadLetterHandler = settings.getDeadLetterHandler();
+        this.metrics = settings.getMetrics();
+        this.visibilityResetOnDrain = settings.isVisibilityResetOnDrain();
+        var maxConcurrentHandlers = settings.getMaxConcurrentHandlers();
+        this.dispatcher = maxConcurrentHandlers > 0 ? Optional.of(new WeightedDispatcher(maxConcurrentHandlers)) : Optional.empty();
+        this.reactiveLoggingContextCreator = settings.getReactiveLoggingContextCreator();
+        this.correlationIdAttributeName = settings.getCorrelationIdAttributeName();
+        this.claimCheck = settings.getClaimCheck();
+        this.deduplicationStore = settings.getDeduplicationStore();
     }
 
     @Override
-    public Mono<Void> checkForMessages(String queueUrl, SqsListener<?> listener) {
-        return fetchMessages(queueUrl, listener)
-                .flatMap(message -> handleMessage(queueUrl, message, listener))
-                .then();
+    public Mono<Integer> checkForMessages(String queueUrl, SqsListener<?> listener) {
+        return Mono.defer(() -> {
+            if (!receiving) {
+                return Mono.just(0);
+            }
+            var inFlightLimiter = getInFlightLimiter(queueUrl, listener);
+            var rateLimiter = getRateLimiter(queueUrl, listener);
+            var receiveMessageRequest = buildReceiveMessageRequest(queueUrl, listener);
+            var maxNumberOfMessages = Optional.ofNullable(receiveMessageRequest.maxNumberOfMessages()).orElse(1);
+            var visibilityExtender = getVisibilityExtender(queueUrl, listener, receiveMessageRequest);
+            var receivedMessages = new AtomicInteger(0);
+            var messages = inFlightLimiter
+                    .acquire(maxNumberOfMessages)
+                    .flatMap(slots -> acquireTokens(queueUrl, rateLimiter, slots, inFlightLimiter))
+                    .takeUntilOther(receivingStopped.asMono().thenReturn(true))
+                    .flatMapMany(slots -> fetchMessages(receiveMessageRequest, maxNumberOfMessages, slots, inFlightLimiter, rateLimiter))
+                    .doOnNext(message -> receivedMessages.incrementAndGet());
+            Mono<Void> handling;
+            if (listener instanceof BatchSqsListener) {
+                handling = handleMessagesAsBatch(queueUrl, messages, (BatchSqsListener<?>) listener, visibilityExtender, inFlightLimiter);
+            } else if (listener.isFifo()) {
+                handling = handleMessagesByGroup(queueUrl, messages, listener, visibilityExtender, inFlightLimiter);
+            } else {
+                handling = handleMessagesIndividually(queueUrl, messages, listener, visibilityExtender, inFlightLimiter);
+            }
+            return handling.then(Mono.fromSupplier(receivedMessages::get));
+        });
+    }
+
+    private ReceiveMessageRequest buildReceiveMessageRequest(String queueUrl, SqsListener<?> listener) {
+        var receiveMessageRequest = listener.buildReceiveMessageRequest(queueUrl);
+        var builder = receiveMessageRequest.toBuilder();
+        var attributeNames = getAttributeNames(receiveMessageRequest, listener);
+        if (attributeNames.size() > receiveMessageRequest.messageSystemAttributeNames().size()) {
+            builder.messageSystemAttributeNames(attributeNames);
+        }
+        var messageAttributeNames = getMessageAttributeNames(receiveMessageRequest);
+        if (messageAttributeNames.size() > receiveMessageRequest.messageAttributeNames().size()) {
+            builder.messageAttributeNames(messageAttributeNames);
+        }
+        return builder.build();
+    }
+
+    private Set<MessageSystemAttributeName> getAttributeNames(ReceiveMessageRequest receiveMessageRequest, SqsListener<?> listener) {
+        var attributeNames = new LinkedHashSet<>(receiveMessageRequest.messageSystemAttributeNames());
+        if (attributeNames.contains(ALL)) {
+            return attributeNames;
+        }
+        if (listener.isFifo()) {
+            attributeNames.add(MESSAGE_GROUP_ID);
+        }
+        if (getMaxReceiveCount(listener) > 0) {
+            attributeNames.add(APPROXIMATE_RECEIVE_COUNT);
+        }
+        if (metrics.isEnabled()) {
+            attributeNames.add(SENT_TIMESTAMP);
+        }
+        return attributeNames;
     }
 
-    private Flux<Message> fetchMessages(String queueUrl, SqsListener<?> listener) {
+    private Set<String> getMessageAttributeNames(ReceiveMessageRequest receiveMessageRequest) {
+        var messageAttributeNames = new LinkedHashSet<>(receiveMessageRequest.messageAttributeNames());
+        if (!messageAttributeNames.contains(ALL_MESSAGE_ATTRIBUTES) && !messageAttributeNames.contains(ALL_MESSAGE_ATTRIBUTES_PATTERN)) {
+            messageAttributeNames.add(correlationIdAttributeName);
+            claimCheck.ifPresent(configured -> messageAttributeNames.add(ClaimCheck.ATTRIBUTE_NAME));
+        }
+        return messageAttributeNames;
+    }
+
+    /**
+     * <p>Waits for the rate limit to allow receiving up to the given slots, giving back the slots it doesn't allow.</p>
+     */
+    private Mono<Integer> acquireTokens(String queueUrl, Optional<RateLimiter> rateLimiter, int slots, InFlightLimiter inFlightLimiter) {
+        if (rateLimiter.isEmpty()) {
+            return Mono.just(slots);
+        }
+        return Mono.defer(() -> {
+            var start = System.nanoTime();
+            return rateLimiter
+                    .get()
+                    .acquire(slots)
+                    .doOnNext(tokens -> {
+                        metrics.recordThrottling(queueUrl, elapsedSince(start));
+                        inFlightLimiter.release(slots - tokens);
+                    })
+                    .doOnCancel(() -> inFlightLimiter.release(slots));
+        });
+    }
+
+    private Flux<Message> fetchMessages(ReceiveMessageRequest receiveMessageRequest, int maxNumberOfMessages, int slots, InFlightLimiter inFlightLimiter, Optional<RateLimiter> rateLimiter) {
+        var limitedReceiveMessageRequest = slots < maxNumberOfMessages
+                ? receiveMessageRequest.toBuilder().maxNumberOfMessages(slots).build()
+                : receiveMessageRequest;
+        var queueUrl = receiveMessageRequest.queueUrl();
+        var unusedSlotsReleased = new AtomicBoolean(false);
         return Mono
-                .fromFuture(() -> {
-                    var receiveMessageRequest = listener.buildReceiveMessageRequest(queueUrl);
-                    return sqsClient.receiveMessage(receiveMessageRequest);
+                .defer(() -> {
+                    var start = System.nanoTime();
+                    return Mono
+                            .fromFuture(() -> sqsClient.receiveMessage(limitedReceiveMessageRequest))
+                            .doOnNext(response -> metrics.recordReceive(queueUrl, elapsedSince(start), response.messages().size(), true))
+                            .doOnError(error -> metrics.recordReceive(queueUrl, elapsedSince(start), 0, false));
                 })
+                .doOnNext(response -> releaseUnusedSlots(unusedSlotsReleased, inFlightLimiter, rateLimiter, slots - response.messages().size()))
+                .doOnError(error -> releaseUnusedSlots(unusedSlotsReleased, inFlightLimiter, rateLimiter, slots))
+                .doOnCancel(() -> releaseUnusedSlots(unusedSlotsReleased, inFlightLimiter, rateLimiter, slots))
+                // the long polling is abandoned, releasing the slots via the above cancellation:
+                .takeUntilOther(receivingStopped.asMono().thenReturn(true))
                 .filter(ReceiveMessageResponse::hasMessages)
-                .flatMapIterable(ReceiveMessageResponse::messages);
+                .flatMapIterable(ReceiveMessageResponse::messages)
+                .doOnNext(message -> recordMessageAge(queueUrl, message));
     }
 
-    @SneakyThrows
-    private <T> Mono<Void> handleMessage(String queueUrl, Message message, SqsListener<T> listener) {
-        var messageBody = objectMapper.readValue(message.body(), listener.getMessageType());
-        var acknowledger = buildAcknowledger(queueUrl, message);
-        return listener.handleMessage(messageBody, acknowledger);
+    private void recordMessageAge(String queueUrl, Message message) {
+        var sentTimestamp = message.attributes().get(SENT_TIMESTAMP);
+        if (sentTimestamp != null) {
+            metrics.recordMessageAge(queueUrl, Duration.ofMillis(Math.max(0, System.currentTimeMillis() - Long.parseLong(sentTimestamp))));
+        }
     }
 
-    private Acknowledger buildAcknowledger(String queueUrl, Message message) {
-        return () -> Mono
-                .fromFuture(() -> {
-                    var deleteMessageRequest = DeleteMessageRequest.builder()
-                            .queueUrl(queueUrl)
-                            .receiptHandle(message.receiptHandle())
-                            .build();
-                    return sqsClient.deleteMessage(deleteMessageRequest);
-                })
+    private static Duration elapsedSince(long start) {
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    @Override
+    public synchronized void stopReceiving() {
+        receiving = false;
+        receivingStopped.tryEmitEmpty();
+    }
+
+    @Override
+    public synchronized void startReceiving() {
+        if (!receiving) {
+            // replaced first, so that the receives seeing the flag set don't get the terminated signal:
+            receivingStopped = Sinks.empty();
+            receiving = true;
+        }
+    }
+
+    private static void releaseUnusedSlots(AtomicBoolean released, InFlightLimiter inFlightLimiter, Optional<RateLimiter> rateLimiter, int unusedSlots) {
+        if (released.compareAndSet(false, true)) {
+            inFlightLimiter.release(unusedSlots);
+            rateLimiter.ifPresent(limiter -> limiter.refund(unusedSlots));
+        }
+    }
+
+    private Mono<Void> handleMessagesIndividually(String queueUrl, Flux<Message> messages, SqsListener<?> listener, Optional<VisibilityExtender> visibilityExtender, InFlightLimiter inFlightLimiter) {
+        return messages
+                .flatMap(message -> Mono
+                        .using(
+                                () -> track(visibilityExtender, message),
+                                heartbeat -> handleMessage(queueUrl, message, listener, heartbeat),
+                                Disposable::dispose
+                        )
+                        .transform(releasing(inFlightLimiter, 1)))
                 .then();
     }
 
+    private Mono<Void> handleMessagesAsBatch(String queueUrl, Flux<Message> messages, BatchSqsListener<?> listener, Optional<VisibilityExtender> visibilityExtender, InFlightLimiter inFlightLimiter) {
+        return messages
+                .collectList()
+                .filter(batch -> !batch.isEmpty())
+                .flatMap(batch -> Mono
+                        .using(
+                                () -> batch.stream().map(message -> track(visibilityExtender, message)).toList(),
+                                heartbeats -> handleBatch(queueUrl, batch, listener, heartbeats),
+                                heartbeats -> heartbeats.forEach(Disposable::dispose)
+                        )
+                        .transform(releasing(inFlightLimiter, batch.size())));
+    }
+
+    private Mono<Void> handleMessagesByGroup(String queueUrl, Flux<Message> messages, SqsListener<?> listener, Optional<VisibilityExtender> visibilityExtender, InFlightLimiter inFlightLimiter) {
+        var messageGroupLimiter = getMessageGroupLimiter(queueUrl, listener);
+        return messages
+                .collect(groupingBy(DefaultSqsMessageChecker::getMessageGroupId, LinkedHashMap::new, toList()))
+                .flatMapIterable(Map::values)
+                .flatMap(group -> Mono
+                        .using(
+                                // tracked straight away, so that the group stays invisible while waiting for its turn:
+                                () -> group.stream().map(message -> track(visibilityExtender, message)).toList(),
+                                heartbeats -> messageGroupLimiter
+                                        .acquire(1)
+                                        .flatMap(slot -> handleGroup(queueUrl, group, listener, heartbeats)
+                                                .transform(releasing(messageGroupLimiter, 1))),
+                                heartbeats -> heartbeats.forEach(Disposable::dispose)
+                        )
+                        .transform(releasing(inFlightLimiter, group.size())))
+                .then();
+    }
+
+    private Mono<Void> handleGroup(String queueUrl, List<Message> group, SqsListener<?> listener, List<Disposable> heartbeats) {
+        return Flux
+                .range(0, group.size())
+                .concatMap(index -> handleMessage(queueUrl, group.get(index), listener, heartbeats.get(index))
+                        .onErrorResume(MessageGroupStoppedException.class, error -> stopGroup(queueUrl, group.subList(index + 1, group.size()), heartbeats.subList(index + 1, group.size()))
+                                .then(Mono.error(error))))
+                .then()
+                .onErrorResume(MessageGroupStoppedException.class, error -> Mono.empty());
+    }
+
+    /**
+     * <p>Makes the remaining messages of a group visible again straight away, so that they get redelivered
+     * after the message left for redelivery, in order.</p>
+     */
+    private Mono<Void> stopGroup(String queueUrl, List<Message> remainingMessages, List<Disposable> remainingHeartbeats) {
+        remainingHeartbeats.forEach(Disposable::dispose);
+        if (remainingMessages.isEmpty()) {
+            return Mono.empty();
+        }
+        log.warn("Stopping the message group of queue {}, leaving its {} remaining messages for redelivery", queueUrl, remainingMessages.size());
+        return resetVisibility(queueUrl, remainingMessages);
+    }
+
+    private static String getMessageGroupId(Message message) {
+        return message.attributes().getOrDefault(MESSAGE_GROUP_ID, "");
+    }
+
+    /**
+     * <p>Gives back the given slots once the handling terminates, before propagating its termination (unlike <code>doFinally</code>),
+     * or if it gets cancelled.</p>
+     */
+    private static Function<Mono<Void>, Mono<Void>> releasing(InFlightLimiter limiter, int slots) {
+        return handling -> handling
+                .doOnTerminate(() -> limiter.release(slots))
+                .doOnCancel(() -> limiter.release(slots));
+    }
+
+    private static Disposable track(Optional<VisibilityExtender> visibilityExtender, Message message) {
+        return visibilityExtender
+                .map(extender -> extender.track(message.receiptHandle()))
+                .orElseGet(Disposables::disposed);
+    }
+
+    private <T> Mono<Void> handleMessage(String queueUrl, Message message, SqsListener<T> listener, Disposable heartbeat) {
+        return dispatch(queueUrl, listener, () -> unlessDraining(queueUrl, List.of(message), List.of(heartbeat), () -> {
+            var acknowledger = buildAcknowledger(queueUrl, message, listener, heartbeat);
+            return deserialise(queueUrl, message, listener, acknowledger, heartbeat)
+                    .flatMap(messageBody -> measureHandling(queueUrl, () -> listener.handleMessage(messageBody, acknowledger)));
+        })).contextWrite(context -> context.putAll(createLoggingContext(message)));
+    }
+
+    /**
+     * <p>A fresh logging context per message, carrying the correlation id of its sender if any.</p>
+     */
+    private ContextView createLoggingContext(Message message) {
+        var correlationId = Optional
+                .ofNullable(message.messageAttributes().get(correlationIdAttributeName))
+                .map(MessageAttributeValue::stringValue);
+        return reactiveLoggingContextCreator.create(correlationId);
+    }
+
+    private <T> Mono<Void> handleBatch(String queueUrl, List<Message> batch, BatchSqsListener<T> listener, List<Disposable> heartbeats) {
+        return dispatch(queueUrl, listener, () -> unlessDraining(queueUrl, batch, heartbeats, () -> handleReceivedBatch(queueUrl, batch, listener, heartbeats)));
+    }
+
+    private Mono<Void> dispatch(String queueUrl, SqsListener<?> listener, Supplier<Mono<Void>> handling) {
+        return dispatcher
+                .map(weightedDispatcher -> weightedDispatcher.dispatch(queueUrl, listener.getDispatchWeight(), handling))
+                .orElseGet(() -> Mono.defer(handling));
+    }
+
+    private <T> Mono<Void> handleReceivedBatch(String queueUrl, List<Message> batch, BatchSqsListener<T> listener, List<Disposable> heartbeats) {
+        List<Acknowledger> acknowledgers = new ArrayList<>(batch.size());
+        for (var index = 0; index < batch.size(); index++) {
+            acknowledgers.add(buildAcknowledger(queueUrl, batch.get(index), listener, heartbeats.get(index)));
+        }
+        return Flux
+                .range(0, batch.size())
+                .flatMapSequential(index -> deserialise(queueUrl, batch.get(index), listener, acknowledgers.get(index), heartbeats.get(index))
+                        .map(messageBody -> Tuples.of(messageBody, acknowledgers.get(index))))
+                .collectList()
+                .filter(handleableMessages -> !handleableMessages.isEmpty())
+                .flatMap(handleableMessages -> measureHandling(queueUrl, () -> listener.handleMessages(
+                        handleableMessages.stream().map(Tuple2::getT1).toList(),
+                        BatchAcknowledger.of(handleableMessages.stream().map(Tuple2::getT2).toList())
+                )));
+    }
+
+    private Mono<Void> measureHandling(String queueUrl, Supplier<Mono<Void>> handling) {
+        return Mono.defer(() -> {
+            var start = System.nanoTime();
+            return Mono
+                    .defer(handling)
+                    .doOnSuccess(result -> metrics.recordHandling(queueUrl, elapsedSince(start), true))
+                    .doOnError(error -> metrics.recordHandling(queueUrl, elapsedSince(start), false));
+        });
+    }
+
+    /**
+     * <p>Handles the given messages, unless the receiving has been stopped before their handling started,
+     * in which case they are made visible again straight away, for other consumers to pick them up.</p>
+     */
+    private Mono<Void> unlessDraining(String queueUrl, List<Message> messages, List<Disposable> heartbeats, Supplier<Mono<Void>> handling) {
+        return Mono.defer(() -> {
+            if (receiving || !visibilityResetOnDrain) {
+                return handling.get();
+            }
+            heartbeats.forEach(Disposable::dispose);
+            return resetVisibility(queueUrl, messages);
+        });
+    }
+
+    private Mono<Void> resetVisibility(String queueUrl, List<Message> messages) {
+        var entries = IntStream
+                .range(0, messages.size())
+                .mapToObj(index -> ChangeMessageVisibilityBatchRequestEntry
+                        .builder()
+                        .id(String.valueOf(index))
+                        .receiptHandle(messages.get(index).receiptHandle())
+                        .visibilityTimeout(0)
+                        .build())
+                .toList();
+        var request = ChangeMessageVisibilityBatchRequest
+                .builder()
+                .queueUrl(queueUrl)
+                .entries(entries)
+                .build();
+        return Mono
+                .fromFuture(() -> sqsClient.changeMessageVisibilityBatch(request))
+                .doOnNext(response -> log.debug("Released {} unhandled messages of queue {}", response.successful().size(), queueUrl))
+                .doOnError(error -> log.warn("Unable to release {} unhandled messages of queue {}", messages.size(), queueUrl, error))
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * <p>Deserialises the body of the given message, or gives the message to the dead-letter handler
+     * if it can't be handled by the listener, in which case the returned mono completes empty.</p>
+     * <p>Duplicates are acknowledged straight away, and complete empty as well.</p>
+     */
+    private <T> Mono<T> deserialise(String queueUrl, Message message, SqsListener<T> listener, Acknowledger acknowledger, Disposable heartbeat) {
+        return isDuplicate(queueUrl, getDeduplicationKey(listener, message))
+                .flatMap(duplicate -> duplicate
+                        ? acknowledgeDuplicate(queueUrl, message, acknowledger)
+                        : deserialiseBody(queueUrl, message, listener, acknowledger, heartbeat));
+    }
+
+    private <T> Mono<T> deserialiseBody(String queueUrl, Message message, SqsListener<T> listener, Acknowledger acknowledger, Disposable heartbeat) {
+        var objectReader = getObjectReader(listener.getMessageType());
+        var maxReceiveCount = getMaxReceiveCount(listener);
+        return Mono
+                .fromRunnable(() -> checkReceiveCount(message, maxReceiveCount))
+                .then(Mono.defer(() -> this.<T>readBody(queueUrl, message, objectReader)))
+                .onErrorResume(error -> deadLetter(queueUrl, message, error, acknowledger, heartbeat, isOrderedByGroup(listener)).then(Mono.empty()));
+    }
+
+    private <T> Mono<T> readBody(String queueUrl, Message message, ObjectReader objectReader) {
+        if (!ClaimCheck.isOffloaded(message)) {
+            return Mono
+                    .fromCallable(() -> objectReader.<T>readValue(message.body()))
+                    .subscribeOn(deserialisationScheduler);
+        }
+        return claimCheck
+                .map(configured -> configured.open(message))
+                .orElseGet(() -> Mono.error(new IllegalStateException("Message " + message.messageId() + " of queue " + queueUrl + " has been offloaded, but no PayloadStore is registered")))
+                // the stream may block while fetching the payload, which mustn't hold the parallel threads:
+                .publishOn(Schedulers.boundedElastic())
+                .map(stream -> {
+                    try (stream) {
+                        return objectReader.<T>readValue(stream);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    private Optional<String> getDeduplicationKey(SqsListener<?> listener, Message message) {
+        return deduplicationStore.isPresent() ? listener.getDeduplicationKey(message) : Optional.empty();
+    }
+
+    /**
+     * <p>Whether the given key has already been handled, a failing lookup being considered as a miss.</p>
+     */
+    private Mono<Boolean> isDuplicate(String queueUrl, Optional<String> deduplicationKey) {
+        return Mono
+                .justOrEmpty(deduplicationKey)
+                .flatMap(key -> deduplicationStore
+                        .orElseThrow()
+                        .contains(queueUrl, key)
+                        .doOnNext(duplicate -> metrics.recordDeduplication(queueUrl, duplicate))
+                        .onErrorResume(error -> {
+                            log.warn("Unable to look up the deduplication key {} of queue {}, handling the message", key, queueUrl, error);
+                            return Mono.just(false);
+                        }))
+                .defaultIfEmpty(false);
+    }
+
+    private <T> Mono<T> acknowledgeDuplicate(String queueUrl, Message message, Acknowledger acknowledger) {
+        return Mono
+                .fromRunnable(() -> log.debug("Acknowledging message {} of queue {} without handling it, as it is a duplicate", message.messageId(), queueUrl))
+                .then(acknowledger.acknowledge())
+                .then(Mono.empty());
+    }
+
+    /**
+     * <p>Marks the given key as handled, a failure only exposing the message to being handled again if redelivered.</p>
+     */
+    private Mono<Void> markHandled(String queueUrl, Optional<String> deduplicationKey) {
+        return Mono
+                .justOrEmpty(deduplicationKey)
+                .flatMap(key -> deduplicationStore
+                        .orElseThrow()
+                        .add(queueUrl, key)
+                        .onErrorResume(error -> {
+                            log.warn("Unable to store the deduplication key {} of queue {}", key, queueUrl, error);
+                            return Mono.empty();
+                        }));
+    }
+
+    private static void checkReceiveCount(Message message, int maxReceiveCount) {
+        var receiveCount = message.attributes().get(APPROXIMATE_RECEIVE_COUNT);
+        if (maxReceiveCount > 0 && receiveCount != null && Integer.parseInt(receiveCount) > maxReceiveCount) {
+            throw new IllegalStateException("Message received " + receiveCount + " times, more than the max receive count of " + maxReceiveCount);
+        }
+    }
+
+    /**
+     * <p>Gives the message to the dead-letter handler if any, otherwise leaves it for redelivery,
+     * in which case the group of an ordered message is stopped so that the next messages of the group don't overtake it.</p>
+     */
+    private Mono<Void> deadLetter(String queueUrl, Message message, Throwable error, Acknowledger acknowledger, Disposable heartbeat, boolean orderedByGroup) {
+        var leftForRedelivery = orderedByGroup
+                ? Mono.<Void>error(() -> new MessageGroupStoppedException(message.messageId()))
+                : Mono.<Void>empty();
+        return deadLetterHandler
+                .map(handler -> Mono
+                        .defer(() -> {
+                            log.warn("Dead-lettering message {} of queue {}", message.messageId(), queueUrl, error);
+                            return handler.handleDeadLetter(queueUrl, message, error);
+                        })
+                        .then(acknowledger.acknowledge()))
+                .orElseGet(() -> Mono
+                        .<Void>fromRunnable(() -> log.error("Unable to handle message {} of queue {}, leaving it for redelivery", message.messageId(), queueUrl, error))
+                        .then(leftForRedelivery))
+                .onErrorResume(deadLetterError -> !(deadLetterError instanceof MessageGroupStoppedException), deadLetterError -> {
+                    log.error("Unable to dead-letter message {} of queue {}, leaving it for redelivery", message.messageId(), queueUrl, deadLetterError);
+                    return leftForRedelivery;
+                })
+                // no need to keep the message invisible, so that SQS can redeliver it or move it to its own dead-letter queue:
+                .doFinally(signal -> heartbeat.dispose());
+    }
+
+    /**
+     * <p>Whether the messages of the listener are handled one at a time per group, see {@link #handleMessagesByGroup}.</p>
+     */
+    private static boolean isOrderedByGroup(SqsListener<?> listener) {
+        return listener.isFifo() && !(listener instanceof BatchSqsListener);
+    }
+
+    private ObjectReader getObjectReader(Class<?> messageType) {
+        // resolving the root deserialiser is costly, so it is done only once per type:
+        return objectReaders.computeIfAbsent(messageType, objectMapper::readerFor);
+    }
+
+    private Acknowledger buildAcknowledger(String queueUrl, Message message, SqsListener<?> listener, Disposable heartbeat) {
+        var acknowledgementAggregator = getAcknowledgementAggregator(queueUrl);
+        var deduplicationKey = getDeduplicationKey(listener, message);
+        return () -> Mono.defer(() -> {
+            heartbeat.dispose();
+            // marked first, so that a redelivery caused by a failing deletion is still caught:
+            return markHandled(queueUrl, deduplicationKey).then(acknowledgementAggregator.acknowledge(message.receiptHandle()));
+        });
+    }
+
+    /**
+     * <p>The aggregator coalescing the acknowledgements of the given queue.</p>
+     */
+    public AcknowledgementAggregator getAcknowledgementAggregator(String queueUrl) {
+        return acknowledgementAggregators.computeIfAbsent(queueUrl, url -> new AcknowledgementAggregator(sqsClient, url, acknowledgementMaxDelay, metrics));
+    }
+
+    /**
+     * <p>The limiter bounding the in-flight messages of the given queue.</p>
+     */
+    public InFlightLimiter getInFlightLimiter(String queueUrl, SqsListener<?> listener) {
+        return inFlightLimiters.computeIfAbsent(queueUrl, url -> {
+            var maxInFlight = listener.getMaxInFlight().orElse(defaultMaxInFlight);
+            var inFlightLimiter = maxInFlight > 0 ? new InFlightLimiter(maxInFlight) : InFlightLimiter.unlimited();
+            metrics.registerInFlightLimiter(url, inFlightLimiter);
+            return inFlightLimiter;
+        });
+    }
+
+    /**
+     * <p>The limiter bounding the receive rate of the given queue, empty if unbounded.</p>
+     */
+    public Optional<RateLimiter> getRateLimiter(String queueUrl, SqsListener<?> listener) {
+        return rateLimiters.computeIfAbsent(queueUrl, url -> listener
+                .getRateLimit()
+                .map(rateLimit -> new RateLimiter(rateLimit, listener.getRateLimitBurst().orElseGet(() -> (int) Math.max(1, Math.ceil(rateLimit))))));
+    }
+
+    /**
+     * <p>The dispatcher sharing the handlers across all the queues, empty if unbounded.</p>
+     */
+    public Optional<WeightedDispatcher> getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * <p>The limiter bounding the active message groups of the given FIFO queue.</p>
+     */
+    public InFlightLimiter getMessageGroupLimiter(String queueUrl, SqsListener<?> listener) {
+        return messageGroupLimiters.computeIfAbsent(queueUrl, url -> {
+            var maxActiveMessageGroups = listener.getMaxActiveMessageGroups().orElse(defaultMaxActiveMessageGroups);
+            return maxActiveMessageGroups > 0 ? new InFlightLimiter(maxActiveMessageGroups) : InFlightLimiter.unlimited();
+        });
+    }
+
+    private int getMaxReceiveCount(SqsListener<?> listener) {
+        return listener.getMaxReceiveCount().orElse(defaultMaxReceiveCount);
+    }
+
+    private Optional<VisibilityExtender> getVisibilityExtender(String queueUrl, SqsListener<?> listener, ReceiveMessageRequest receiveMessageRequest) {
+        var visibilityTimeout = receiveMessageRequest.visibilityTimeout();
+        if (!listener.isVisibilityTimeoutExtended() || visibilityTimeout == null || visibilityTimeout < 1) {
+            return Optional.empty();
+        }
+        return Optional.of(visibilityExtenders.computeIfAbsent(queueUrl, url -> new VisibilityExtender(sqsClient, url, visibilityTimeout)));
+    }
+
+    /**
+     * <p>Flushes the pending acknowledgements of all the queues (waiting up to 10 seconds for them to complete),
+     * and stops extending the visibility timeouts.</p>
+     */
+    public void close() {
+        visibilityExtenders.values().forEach(VisibilityExtender::dispose);
+        Flux
+                .fromIterable(acknowledgementAggregators.values())
+                .flatMap(AcknowledgementAggregator::drain)
+                .then()
+                .timeout(ACKNOWLEDGEMENTS_DRAIN_TIMEOUT, Mono.fromRunnable(() -> log.warn("Pending acknowledgements not flushed after {}", ACKNOWLEDGEMENTS_DRAIN_TIMEOUT)))
+                .block();
+    }
+
+    /**
+     * <p>Signals that a message of a FIFO group has been left for redelivery, so that the rest of its group must not be handled.</p>
+     */
+    private static final class MessageGroupStoppedException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        MessageGroupStoppedException(String messageId) {
+            super("Message " + messageId + " left for redelivery", null, false, false);
+        }
+
+    }
+
 }
@@ -0,0 +1,123 @@
+package com.qudini.reactive.sqs.message;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * <p>Bounds the number of messages of a queue being handled at the same time, across all its pollers.</p>
+ * <p>Slots are reserved before receiving messages, so that pollers stop receiving while the budget is exhausted,
+ * instead of pulling messages whose visibility timeout would expire while waiting to be handled.</p>
+ */
+public final class InFlightLimiter {
+
+    private final int maxInFlight;
+
+    private final Queue<Waiter> waiters = new ArrayDeque<>();
+
+    private int available;
+
+    public InFlightLimiter(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("The max in-flight messages must be positive, got " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+        this.available = maxInFlight;
+    }
+
+    /**
+     * <p>A limiter that never blocks, but still tracks the in-flight messages.</p>
+     */
+    public static InFlightLimiter unlimited() {
+        return new InFlightLimiter(Integer.MAX_VALUE);
+    }
+
+    /**
+     * <p>Waits until at least one slot is available, then reserves as many slots as possible, up to the given max.</p>
+     * <p>The reserved slots must be given back via {@link #release(int)}.</p>
+     */
+    public Mono<Integer> acquire(int max) {
+        return Mono.create(sink -> {
+            var waiter = new Waiter(max, sink);
+            synchronized (this) {
+                if (available > 0 && waiters.isEmpty()) {
+                    waiter.granted = Math.min(max, available);
+                    available -= waiter.granted;
+                } else {
+                    waiters.add(waiter);
+                }
+            }
+            if (waiter.granted > 0) {
+                sink.success(waiter.granted);
+            } else {
+                sink.onCancel(() -> cancel(waiter));
+            }
+        });
+    }
+
+    /**
+     * <p>Gives back the given number of slots, waking up the pollers waiting for some.</p>
+     */
+    public void release(int slots) {
+        if (slots < 1) {
+            return;
+        }
+        List<Waiter> grantedWaiters = new ArrayList<>();
+        synchronized (this) {
+            available += slots;
+            while (available > 0 && !waiters.isEmpty()) {
+                var waiter = waiters.poll();
+                waiter.granted = Math.min(waiter.max, available);
+                available -= waiter.granted;
+                grantedWaiters.add(waiter);
+            }
+        }
+        grantedWaiters.forEach(waiter -> waiter.sink.success(waiter.granted));
+    }
+
+    /**
+     * <p>The max number of messages allowed to be in flight.</p>
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * <p>The number of slots currently reserved.</p>
+     */
+    public synchronized int getInFlight() {
+        return maxInFlight - available;
+    }
+
+    private void cancel(Waiter waiter) {
+        int granted;
+        synchronized (this) {
+            if (waiters.remove(waiter)) {
+                return;
+            }
+            granted = waiter.granted;
+        }
+        // the slots were granted but the poller cancelled before receiving them:
+        release(granted);
+    }
+
+    private static final class Waiter {
+
+        private final int max;
+
+        private final MonoSink<Integer> sink;
+
+        private int granted;
+
+        private Waiter(int max, MonoSink<Integer> sink) {
+            this.max = max;
+            this.sink = sink;
+        }
+
+    }
+
+}
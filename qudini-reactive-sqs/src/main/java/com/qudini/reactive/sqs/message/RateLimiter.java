@@ -0,0 +1,96 @@
+package com.qudini.reactive.sqs.message;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>Bounds the rate at which the messages of a queue are received, across all its pollers (token bucket).</p>
+ * <p>Tokens are taken before receiving messages, so that pollers stop receiving while the bucket is empty,
+ * instead of pulling messages whose visibility timeout would expire while waiting to be handled.</p>
+ */
+public final class RateLimiter {
+
+    private static final long NANOS_PER_SECOND = Duration.ofSeconds(1).toNanos();
+
+    private final double permitsPerSecond;
+
+    private final int burst;
+
+    private final LongSupplier nanoTime;
+
+    private double tokens;
+
+    private long lastRefill;
+
+    public RateLimiter(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, System::nanoTime);
+    }
+
+    RateLimiter(double permitsPerSecond, int burst, LongSupplier nanoTime) {
+        if (!(permitsPerSecond > 0)) {
+            throw new IllegalArgumentException("The rate limit must be positive, got " + permitsPerSecond);
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("The rate limit burst must be positive, got " + burst);
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.nanoTime = nanoTime;
+        this.tokens = burst;
+        this.lastRefill = nanoTime.getAsLong();
+    }
+
+    /**
+     * <p>Waits until at least one token is available, then takes as many tokens as possible, up to the given max.</p>
+     * <p>No token is taken if the returned mono is cancelled while waiting.</p>
+     */
+    public Mono<Integer> acquire(int max) {
+        return Mono.defer(() -> {
+            Duration wait;
+            synchronized (this) {
+                refill();
+                if (tokens >= 1) {
+                    var granted = (int) Math.min(max, Math.floor(tokens));
+                    tokens -= granted;
+                    return Mono.just(granted);
+                }
+                wait = Duration.ofNanos((long) Math.ceil((1 - tokens) * NANOS_PER_SECOND / permitsPerSecond));
+            }
+            // other pollers may take the token in the meantime, in which case this one waits again:
+            return Mono.delay(wait).then(acquire(max));
+        });
+    }
+
+    /**
+     * <p>Gives back the given number of unused tokens, e.g. when fewer messages than expected have been received.</p>
+     */
+    public synchronized void refund(int unused) {
+        if (unused > 0) {
+            refill();
+            tokens = Math.min(burst, tokens + unused);
+        }
+    }
+
+    /**
+     * <p>The number of tokens added to the bucket per second.</p>
+     */
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    /**
+     * <p>The max number of tokens the bucket holds, i.e. the max number of messages received at once after a pause.</p>
+     */
+    public int getBurst() {
+        return burst;
+    }
+
+    private void refill() {
+        var now = nanoTime.getAsLong();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * permitsPerSecond / NANOS_PER_SECOND);
+        lastRefill = now;
+    }
+
+}
@@ -5,6 +5,24 @@ import reactor.core.publisher.Mono;
 
 public interface SqsMessageChecker {
 
-    Mono<Void> checkForMessages(String queueUrl, SqsListener<?> listener);
+    /**
+     * <p>Receives messages from the given queue and lets the given listener handle them.</p>
+     * <p>Emits the number of messages received once they have all been handled,
+     * so that the pollers can be scaled accordingly (no scaling if empty).</p>
+     */
+    Mono<Integer> checkForMessages(String queueUrl, SqsListener<?> listener);
+
+    /**
+     * <p>Stops receiving messages until {@link #startReceiving()} is called, typically before shutting down:
+     * the pending receives complete without any message, while the messages already being handled keep going.</p>
+     */
+    default void stopReceiving() {
+    }
+
+    /**
+     * <p>Receives messages again after {@link #stopReceiving()} (no-op if receiving already).</p>
+     */
+    default void startReceiving() {
+    }
 
 }
@@ -0,0 +1,74 @@
+package com.qudini.reactive.sqs.message;
+
+import com.qudini.reactive.logging.Log;
+import com.qudini.reactive.logging.ReactiveLoggingContextCreator;
+import com.qudini.reactive.logging.correlation.DefaultCorrelationIdGenerator;
+import com.qudini.reactive.sqs.DeadLetterHandler;
+import com.qudini.reactive.sqs.dedup.DeduplicationStore;
+import com.qudini.reactive.sqs.metrics.SqsMetrics;
+import com.qudini.reactive.sqs.payload.ClaimCheck;
+import lombok.Builder;
+import lombok.Value;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * <p>The tuning of a {@link DefaultSqsMessageChecker}, each setting defaulting to the default of its
+ * <code>qudini-reactive.sqs.*</code> property.</p>
+ * <p>The <code>default*</code> settings apply to the listeners that don't override them, 0 meaning unbounded.</p>
+ */
+@Value
+@Builder(toBuilder = true)
+public class SqsMessageCheckerSettings {
+
+    /**
+     * <p>The scheduler the messages are deserialised on.</p>
+     */
+    @Builder.Default
+    Scheduler deserialisationScheduler = Schedulers.parallel();
+
+    /**
+     * <p>How long an acknowledgement can wait for its batch to fill up before being flushed.</p>
+     */
+    @Builder.Default
+    Duration acknowledgementMaxDelay = Duration.ofMillis(50);
+
+    int defaultMaxInFlight;
+
+    int defaultMaxActiveMessageGroups;
+
+    int defaultMaxReceiveCount;
+
+    @Builder.Default
+    Optional<DeadLetterHandler> deadLetterHandler = Optional.empty();
+
+    @Builder.Default
+    SqsMetrics metrics = SqsMetrics.noop();
+
+    /**
+     * <p>Whether the messages received but not handled yet are made visible again once the receiving is stopped.</p>
+     */
+    @Builder.Default
+    boolean visibilityResetOnDrain = true;
+
+    /**
+     * <p>The max number of messages handled at the same time across all the queues, 0 meaning unbounded.</p>
+     */
+    int maxConcurrentHandlers;
+
+    @Builder.Default
+    ReactiveLoggingContextCreator reactiveLoggingContextCreator = new Log(new DefaultCorrelationIdGenerator(""));
+
+    @Builder.Default
+    String correlationIdAttributeName = "correlation_id";
+
+    @Builder.Default
+    Optional<ClaimCheck> claimCheck = Optional.empty();
+
+    @Builder.Default
+    Optional<DeduplicationStore> deduplicationStore = Optional.empty();
+
+}
@@ -0,0 +1,131 @@
+package com.qudini.reactive.sqs.message;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * <p>Periodically extends the visibility timeout of the messages of a queue that are still being handled,
+ * so that long-running handlers don't see their message redelivered to another consumer.</p>
+ * <p>Heartbeats are sent every half visibility timeout, via <code>ChangeMessageVisibilityBatch</code> calls.</p>
+ */
+@Slf4j
+public final class VisibilityExtender implements Disposable {
+
+    private static final int MAX_BATCH_SIZE = 10;
+
+    private final SqsAsyncClient sqsClient;
+
+    private final String queueUrl;
+
+    private final int visibilityTimeout;
+
+    private final Set<String> receiptHandles = ConcurrentHashMap.newKeySet();
+
+    private final Disposable heartbeats;
+
+    public VisibilityExtender(SqsAsyncClient sqsClient, String queueUrl, int visibilityTimeout) {
+        if (visibilityTimeout < 1) {
+            throw new IllegalArgumentException("The visibility timeout must be positive, got " + visibilityTimeout);
+        }
+        this.sqsClient = sqsClient;
+        this.queueUrl = queueUrl;
+        this.visibilityTimeout = visibilityTimeout;
+        var interval = getHeartbeatInterval(visibilityTimeout);
+        this.heartbeats = Flux
+                .interval(interval, interval)
+                .onBackpressureDrop()
+                .concatMap(tick -> extend())
+                .subscribe();
+    }
+
+    /**
+     * <p>Half the visibility timeout, so that an extension always happens before the message becomes visible again.</p>
+     */
+    public static Duration getHeartbeatInterval(int visibilityTimeout) {
+        return Duration.ofMillis(visibilityTimeout * 500L);
+    }
+
+    /**
+     * <p>Keeps extending the visibility timeout of the given message until the returned disposable is disposed.</p>
+     */
+    public Disposable track(String receiptHandle) {
+        receiptHandles.add(receiptHandle);
+        return () -> receiptHandles.remove(receiptHandle);
+    }
+
+    /**
+     * <p>The number of messages currently being kept invisible.</p>
+     */
+    public int getTrackedMessages() {
+        return receiptHandles.size();
+    }
+
+    @Override
+    public void dispose() {
+        heartbeats.dispose();
+        receiptHandles.clear();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return heartbeats.isDisposed();
+    }
+
+    private Mono<Void> extend() {
+        return Flux
+                .fromIterable(List.copyOf(receiptHandles))
+                .buffer(MAX_BATCH_SIZE)
+                .flatMap(this::extend)
+                .then();
+    }
+
+    private Mono<Void> extend(List<String> batch) {
+        return Mono
+                .fromFuture(() -> sqsClient.changeMessageVisibilityBatch(buildRequest(batch)))
+                .doOnNext(response -> untrackFailures(batch, response))
+                .doOnError(error -> log.warn("Unable to extend the visibility timeout of {} messages of queue {}", batch.size(), queueUrl, error))
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    private ChangeMessageVisibilityBatchRequest buildRequest(List<String> batch) {
+        var entries = IntStream
+                .range(0, batch.size())
+                .mapToObj(index -> ChangeMessageVisibilityBatchRequestEntry
+                        .builder()
+                        .id(String.valueOf(index))
+                        .receiptHandle(batch.get(index))
+                        .visibilityTimeout(visibilityTimeout)
+                        .build())
+                .toList();
+        return ChangeMessageVisibilityBatchRequest
+                .builder()
+                .queueUrl(queueUrl)
+                .entries(entries)
+                .build();
+    }
+
+    private void untrackFailures(List<String> batch, ChangeMessageVisibilityBatchResponse response) {
+        response.failed().forEach(entry -> untrackFailure(batch, entry));
+    }
+
+    private void untrackFailure(List<String> batch, BatchResultErrorEntry entry) {
+        // the message has most likely been deleted or has already become visible again, no need to keep trying:
+        log.debug("Unable to extend the visibility timeout of a message of queue {}: {} {}", queueUrl, entry.code(), entry.message());
+        receiptHandles.remove(batch.get(Integer.parseInt(entry.id())));
+    }
+
+}
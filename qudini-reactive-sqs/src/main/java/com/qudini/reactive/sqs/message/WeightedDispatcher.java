@@ -0,0 +1,162 @@
+package com.qudini.reactive.sqs.message;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.function.Supplier;
+
+/**
+ * <p>Bounds the number of messages being handled at the same time across all the queues,
+ * sharing the handlers between the queues proportionally to their weight when they compete for them.</p>
+ * <p>The messages of a queue wait for a handler in the order they were received, while the next queue to be served
+ * is elected via stride scheduling: a queue with a weight of 3 gets 3 handlers for each one given to a queue with a weight of 1.
+ * A queue alone in needing handlers can use all of them.</p>
+ */
+public final class WeightedDispatcher {
+
+    private static final long STRIDE = 1 << 20;
+
+    private final int maxConcurrentHandlers;
+
+    private final Map<String, QueueWaiters> queues = new LinkedHashMap<>();
+
+    private int available;
+
+    private long virtualTime;
+
+    public WeightedDispatcher(int maxConcurrentHandlers) {
+        if (maxConcurrentHandlers < 1) {
+            throw new IllegalArgumentException("The max concurrent handlers must be positive, got " + maxConcurrentHandlers);
+        }
+        this.maxConcurrentHandlers = maxConcurrentHandlers;
+        this.available = maxConcurrentHandlers;
+    }
+
+    /**
+     * <p>Waits for a handler to be available for the given queue, then runs the given handling,
+     * releasing the handler once it terminates.</p>
+     */
+    public Mono<Void> dispatch(String queueUrl, int weight, Supplier<Mono<Void>> handling) {
+        return Mono.usingWhen(
+                acquire(queueUrl, weight),
+                handler -> Mono.defer(handling),
+                handler -> Mono.fromRunnable(this::release)
+        );
+    }
+
+    /**
+     * <p>The max number of messages allowed to be handled at the same time.</p>
+     */
+    public int getMaxConcurrentHandlers() {
+        return maxConcurrentHandlers;
+    }
+
+    /**
+     * <p>The number of handlers currently in use.</p>
+     */
+    public synchronized int getActiveHandlers() {
+        return maxConcurrentHandlers - available;
+    }
+
+    private Mono<Boolean> acquire(String queueUrl, int weight) {
+        return Mono.create(sink -> {
+            var waiter = new Waiter(sink);
+            synchronized (this) {
+                if (available > 0 && queues.values().stream().allMatch(QueueWaiters::isEmpty)) {
+                    available--;
+                    waiter.granted = true;
+                } else {
+                    var queue = queues.computeIfAbsent(queueUrl, url -> new QueueWaiters());
+                    if (queue.isEmpty()) {
+                        // a queue becoming active doesn't get any credit for the time it was idle:
+                        queue.pass = Math.max(queue.pass, virtualTime);
+                    }
+                    queue.weight = weight;
+                    queue.waiters.add(waiter);
+                    waiter.queue = queue;
+                }
+            }
+            if (waiter.granted) {
+                sink.success(true);
+            } else {
+                sink.onCancel(() -> cancel(waiter));
+            }
+        });
+    }
+
+    private void release() {
+        List<Waiter> grantedWaiters = new ArrayList<>();
+        synchronized (this) {
+            available++;
+            while (available > 0) {
+                var queue = electQueue();
+                if (queue == null) {
+                    break;
+                }
+                var waiter = queue.waiters.poll();
+                virtualTime = queue.pass;
+                queue.pass += STRIDE / queue.weight;
+                available--;
+                waiter.granted = true;
+                grantedWaiters.add(waiter);
+            }
+        }
+        grantedWaiters.forEach(waiter -> waiter.sink.success(true));
+    }
+
+    private QueueWaiters electQueue() {
+        QueueWaiters elected = null;
+        for (var queue : queues.values()) {
+            if (!queue.isEmpty() && (elected == null || queue.pass < elected.pass)) {
+                elected = queue;
+            }
+        }
+        return elected;
+    }
+
+    private void cancel(Waiter waiter) {
+        synchronized (this) {
+            if (!waiter.granted) {
+                waiter.queue.waiters.remove(waiter);
+                return;
+            }
+        }
+        // the handler was granted but the message was cancelled before receiving it:
+        release();
+    }
+
+    private static final class QueueWaiters {
+
+        private final Queue<Waiter> waiters = new ArrayDeque<>();
+
+        private int weight;
+
+        private long pass;
+
+        private boolean isEmpty() {
+            return waiters.isEmpty();
+        }
+
+    }
+
+    private static final class Waiter {
+
+        private final MonoSink<Boolean> sink;
+
+        private QueueWaiters queue;
+
+        private boolean granted;
+
+        private Waiter(MonoSink<Boolean> sink) {
+            this.sink = sink;
+        }
+
+    }
+
+}
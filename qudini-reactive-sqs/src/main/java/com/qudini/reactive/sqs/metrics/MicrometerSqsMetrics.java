@@ -0,0 +1,142 @@
+package com.qudini.reactive.sqs.metrics;
+
+import com.qudini.reactive.sqs.message.InFlightLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+/**
+ * <p>Records the SQS metrics on the given registry, tagged by <code>queue_name</code>:</p>
+ * <ul>
+ * <li><code>sqs_receive_duration</code> (timer, also tagged by <code>status</code>): the <code>ReceiveMessage</code> round trips,</li>
+ * <li><code>sqs_received_messages</code> (distribution summary): the number of messages per receive,</li>
+ * <li><code>sqs_empty_receives</code> (counter): the receives that returned no message,</li>
+ * <li><code>sqs_message_age</code> (timer): the time messages spent in the queue before being received,</li>
+ * <li><code>sqs_handling_duration</code> (timer, also tagged by <code>status</code>): the time listeners took to handle messages,</li>
+ * <li><code>sqs_acknowledgement_duration</code> (timer, also tagged by <code>status</code>): the time deletions took, batching included,</li>
+ * <li><code>sqs_acknowledgement_batch_size</code> (distribution summary, also tagged by <code>trigger</code>): the number of deletions per <code>DeleteMessageBatch</code> call,</li>
+ * <li><code>sqs_throttled_duration</code> (timer): the time pollers waited for the rate limit of the queue,</li>
+ * <li><code>sqs_deduplication_lookups</code> (counter, also tagged by <code>result</code>): the deduplication store hits and misses,</li>
+ * <li><code>sqs_poll_retries</code> (counter): the pollers backing off after an error,</li>
+ * <li><code>sqs_in_flight_messages</code> (gauge): the messages currently being handled,</li>
+ * <li><code>sqs_active_pollers</code> (gauge): the pollers currently running.</li>
+ * </ul>
+ * <p>The meters are registered once per queue and tags, then reused.</p>
+ */
+public final class MicrometerSqsMetrics implements SqsMetrics {
+
+    private final MeterRegistry registry;
+
+    private final Map<MeterKey, Meter> meters = new ConcurrentHashMap<>();
+
+    public MicrometerSqsMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void recordReceive(String queueUrl, Duration duration, int receivedMessages, boolean success) {
+        getTimer("sqs_receive_duration", queueUrl, Tags.of("status", getStatus(success))).record(duration);
+        if (success) {
+            getDistributionSummary("sqs_received_messages", queueUrl, Tags.empty()).record(receivedMessages);
+            if (receivedMessages == 0) {
+                getCounter("sqs_empty_receives", queueUrl, Tags.empty()).increment();
+            }
+        }
+    }
+
+    @Override
+    public void recordMessageAge(String queueUrl, Duration age) {
+        getTimer("sqs_message_age", queueUrl, Tags.empty()).record(age);
+    }
+
+    @Override
+    public void recordHandling(String queueUrl, Duration duration, boolean success) {
+        getTimer("sqs_handling_duration", queueUrl, Tags.of("status", getStatus(success))).record(duration);
+    }
+
+    @Override
+    public void recordAcknowledgement(String queueUrl, Duration duration, boolean success) {
+        getTimer("sqs_acknowledgement_duration", queueUrl, Tags.of("status", getStatus(success))).record(duration);
+    }
+
+    @Override
+    public void recordAcknowledgementBatch(String queueUrl, int batchSize, boolean full) {
+        getDistributionSummary("sqs_acknowledgement_batch_size", queueUrl, Tags.of("trigger", full ? "size" : "delay")).record(batchSize);
+    }
+
+    @Override
+    public void recordThrottling(String queueUrl, Duration duration) {
+        getTimer("sqs_throttled_duration", queueUrl, Tags.empty()).record(duration);
+    }
+
+    @Override
+    public void recordDeduplication(String queueUrl, boolean duplicate) {
+        getCounter("sqs_deduplication_lookups", queueUrl, Tags.of("result", duplicate ? "hit" : "miss")).increment();
+    }
+
+    @Override
+    public void recordRetry(String queueUrl) {
+        getCounter("sqs_poll_retries", queueUrl, Tags.empty()).increment();
+    }
+
+    @Override
+    public void registerInFlightLimiter(String queueUrl, InFlightLimiter inFlightLimiter) {
+        Gauge
+                .builder("sqs_in_flight_messages", inFlightLimiter, InFlightLimiter::getInFlight)
+                .tag("queue_name", getQueueName(queueUrl))
+                .register(registry);
+    }
+
+    @Override
+    public void registerPollers(String queueUrl, IntSupplier activePollers) {
+        // strongly referenced, unlike the gauges built on an object:
+        Gauge
+                .builder("sqs_active_pollers", activePollers::getAsInt)
+                .tag("queue_name", getQueueName(queueUrl))
+                .register(registry);
+    }
+
+    private Timer getTimer(String name, String queueUrl, Tags tags) {
+        return getMeter(name, queueUrl, tags, queueTags -> Timer.builder(name).tags(queueTags).register(registry));
+    }
+
+    private DistributionSummary getDistributionSummary(String name, String queueUrl, Tags tags) {
+        return getMeter(name, queueUrl, tags, queueTags -> DistributionSummary.builder(name).tags(queueTags).register(registry));
+    }
+
+    private Counter getCounter(String name, String queueUrl, Tags tags) {
+        return getMeter(name, queueUrl, tags, queueTags -> Counter.builder(name).tags(queueTags).register(registry));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <M extends Meter> M getMeter(String name, String queueUrl, Tags tags, Function<Tags, M> register) {
+        return (M) meters.computeIfAbsent(new MeterKey(name, queueUrl, tags), key -> register.apply(tags.and("queue_name", getQueueName(queueUrl))));
+    }
+
+    private static String getQueueName(String queueUrl) {
+        return queueUrl.substring(queueUrl.lastIndexOf('/') + 1);
+    }
+
+    private static String getStatus(boolean success) {
+        return success ? "success" : "error";
+    }
+
+    private record MeterKey(String name, String queueUrl, Tags tags) {
+    }
+
+}
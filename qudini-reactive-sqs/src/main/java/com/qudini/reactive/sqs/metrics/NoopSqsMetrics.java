@@ -0,0 +1,60 @@
+package com.qudini.reactive.sqs.metrics;
+
+import com.qudini.reactive.sqs.message.InFlightLimiter;
+
+import java.time.Duration;
+import java.util.function.IntSupplier;
+
+final class NoopSqsMetrics implements SqsMetrics {
+
+    static final SqsMetrics INSTANCE = new NoopSqsMetrics();
+
+    private NoopSqsMetrics() {
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void recordReceive(String queueUrl, Duration duration, int receivedMessages, boolean success) {
+    }
+
+    @Override
+    public void recordMessageAge(String queueUrl, Duration age) {
+    }
+
+    @Override
+    public void recordHandling(String queueUrl, Duration duration, boolean success) {
+    }
+
+    @Override
+    public void recordAcknowledgement(String queueUrl, Duration duration, boolean success) {
+    }
+
+    @Override
+    public void recordAcknowledgementBatch(String queueUrl, int batchSize, boolean full) {
+    }
+
+    @Override
+    public void recordThrottling(String queueUrl, Duration duration) {
+    }
+
+    @Override
+    public void recordDeduplication(String queueUrl, boolean duplicate) {
+    }
+
+    @Override
+    public void recordRetry(String queueUrl) {
+    }
+
+    @Override
+    public void registerInFlightLimiter(String queueUrl, InFlightLimiter inFlightLimiter) {
+    }
+
+    @Override
+    public void registerPollers(String queueUrl, IntSupplier activePollers) {
+    }
+
+}
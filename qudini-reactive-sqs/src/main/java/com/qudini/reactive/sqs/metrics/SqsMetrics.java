@@ -0,0 +1,76 @@
+package com.qudini.reactive.sqs.metrics;
+
+import com.qudini.reactive.sqs.message.InFlightLimiter;
+
+import java.time.Duration;
+import java.util.function.IntSupplier;
+
+/**
+ * <p>Records the metrics of the SQS listener pipeline, per queue.</p>
+ * <p>Backed by Micrometer when a <code>MeterRegistry</code> is available (e.g. via <code>qudini-reactive-metrics</code>),
+ * no-op otherwise.</p>
+ */
+public interface SqsMetrics {
+
+    /**
+     * <p>Whether the metrics are actually recorded, so that collecting them can be skipped otherwise.</p>
+     */
+    boolean isEnabled();
+
+    /**
+     * <p>Records a <code>ReceiveMessage</code> call, and the number of messages it returned.</p>
+     */
+    void recordReceive(String queueUrl, Duration duration, int receivedMessages, boolean success);
+
+    /**
+     * <p>Records the time a message spent in the queue before being received, given its <code>SentTimestamp</code>.</p>
+     */
+    void recordMessageAge(String queueUrl, Duration age);
+
+    /**
+     * <p>Records the handling of a message, or of a batch of messages, by a listener.</p>
+     */
+    void recordHandling(String queueUrl, Duration duration, boolean success);
+
+    /**
+     * <p>Records the deletion of a message, from its acknowledgement to the <code>DeleteMessageBatch</code> result.</p>
+     */
+    void recordAcknowledgement(String queueUrl, Duration duration, boolean success);
+
+    /**
+     * <p>Records the flush of a <code>DeleteMessageBatch</code> call, given its size and whether it was full
+     * (otherwise flushed because its max delay elapsed, or because the acknowledgements were closed).</p>
+     */
+    void recordAcknowledgementBatch(String queueUrl, int batchSize, boolean full);
+
+    /**
+     * <p>Records the time a poller of the queue waited for its rate limit before receiving messages.</p>
+     */
+    void recordThrottling(String queueUrl, Duration duration);
+
+    /**
+     * <p>Records the lookup of a message in the deduplication store, and whether it was a duplicate.</p>
+     */
+    void recordDeduplication(String queueUrl, boolean duplicate);
+
+    /**
+     * <p>Records a poller of the queue backing off after an error.</p>
+     */
+    void recordRetry(String queueUrl);
+
+    /**
+     * <p>Exposes the number of messages of the queue currently in flight.</p>
+     */
+    void registerInFlightLimiter(String queueUrl, InFlightLimiter inFlightLimiter);
+
+    /**
+     * <p>Exposes the number of pollers of the queue currently running, as given by the supplier.</p>
+     * <p>Called once per queue, the supplier following the restarts of its polling.</p>
+     */
+    void registerPollers(String queueUrl, IntSupplier activePollers);
+
+    static SqsMetrics noop() {
+        return NoopSqsMetrics.INSTANCE;
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.qudini.reactive.sqs.payload;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>Offloads the bodies of the messages exceeding the threshold to the {@link PayloadStore}, sending a reference instead,
+ * flagged by the {@value #ATTRIBUTE_NAME} message attribute (holding the size of the original body),
+ * and resolves these references back when receiving.</p>
+ * <p>The fetched payloads up to a tenth of the cache size are kept in a local cache bounded by their total size in bytes,
+ * so that redelivered messages don't fetch them again. Larger payloads, or all of them without cache,
+ * are streamed straight to the deserialiser instead of being buffered in memory.</p>
+ * <p>The fetched streams may block, so they are only ever read on {@link Schedulers#boundedElastic()}.</p>
+ */
+public final class ClaimCheck {
+
+    public static final String ATTRIBUTE_NAME = "claim_check";
+
+    private static final int CACHED_PAYLOADS_RATIO = 10;
+
+    private final PayloadStore payloadStore;
+
+    private final int threshold;
+
+    private final Optional<Cache<String, byte[]>> cache;
+
+    private final long maxCachedPayloadBytes;
+
+    public ClaimCheck(PayloadStore payloadStore, int threshold, long cacheMaxBytes) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("The claim check threshold must be positive, got " + threshold);
+        }
+        this.payloadStore = payloadStore;
+        this.threshold = threshold;
+        this.cache = cacheMaxBytes > 0
+                ? Optional.of(CacheBuilder.newBuilder().maximumWeight(cacheMaxBytes).<String, byte[]>weigher((reference, payload) -> payload.length).build())
+                : Optional.empty();
+        this.maxCachedPayloadBytes = cacheMaxBytes / CACHED_PAYLOADS_RATIO;
+    }
+
+    /**
+     * <p>The size in bytes above which message bodies are offloaded.</p>
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * <p>Stores the body of the given entry, and returns the entry referencing it instead.</p>
+     */
+    public Mono<SendMessageBatchRequestEntry> offload(String queueUrl, SendMessageBatchRequestEntry entry) {
+        return Mono.defer(() -> {
+            var payload = entry.messageBody().getBytes(UTF_8);
+            return payloadStore
+                    .store(queueUrl, payload)
+                    .map(reference -> {
+                        var messageAttributes = new HashMap<>(entry.messageAttributes());
+                        messageAttributes.put(ATTRIBUTE_NAME, MessageAttributeValue.builder().dataType("Number").stringValue(String.valueOf(payload.length)).build());
+                        return entry.toBuilder().messageBody(reference).messageAttributes(messageAttributes).build();
+                    });
+        });
+    }
+
+    /**
+     * <p>Whether the body of the given message has been offloaded.</p>
+     */
+    public static boolean isOffloaded(Message message) {
+        return message.messageAttributes().containsKey(ATTRIBUTE_NAME);
+    }
+
+    /**
+     * <p>Opens the offloaded body of the given message, from the cache if small enough, streamed from the store otherwise.</p>
+     */
+    public Mono<InputStream> open(Message message) {
+        var reference = message.body();
+        return cache
+                .filter(payloads -> getOffloadedSize(message).map(size -> size <= maxCachedPayloadBytes).orElse(false))
+                .map(payloads -> Mono
+                        .justOrEmpty(payloads.getIfPresent(reference))
+                        .switchIfEmpty(Mono.defer(() -> payloadStore
+                                .fetch(reference)
+                                .publishOn(Schedulers.boundedElastic())
+                                .map(ClaimCheck::readAllBytes)
+                                .doOnNext(payload -> payloads.put(reference, payload))))
+                        .<InputStream>map(ByteArrayInputStream::new))
+                .orElseGet(() -> payloadStore.fetch(reference));
+    }
+
+    /**
+     * <p>The size of the offloaded body, as sent via the message attribute, empty if missing or invalid.</p>
+     */
+    private static Optional<Long> getOffloadedSize(Message message) {
+        try {
+            return Optional
+                    .ofNullable(message.messageAttributes().get(ATTRIBUTE_NAME))
+                    .map(MessageAttributeValue::stringValue)
+                    .map(Long::parseLong);
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static byte[] readAllBytes(InputStream stream) {
+        try (stream) {
+            return stream.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.qudini.reactive.sqs.payload;
+
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>A {@link PayloadStore} keeping the payloads in memory, e.g. for local development and tests.</p>
+ */
+public final class InMemoryPayloadStore implements PayloadStore {
+
+    private final Map<String, byte[]> payloads = new ConcurrentHashMap<>();
+
+    @Override
+    public Mono<String> store(String queueUrl, byte[] payload) {
+        return Mono.fromSupplier(() -> {
+            var reference = UUID.randomUUID().toString();
+            payloads.put(reference, payload.clone());
+            return reference;
+        });
+    }
+
+    @Override
+    public Mono<InputStream> fetch(String reference) {
+        return Mono
+                .justOrEmpty(payloads.get(reference))
+                .<InputStream>map(ByteArrayInputStream::new)
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("No payload found for reference " + reference)));
+    }
+
+    /**
+     * <p>The number of payloads currently stored.</p>
+     */
+    public int getStoredPayloads() {
+        return payloads.size();
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.qudini.reactive.sqs.payload;
+
+import reactor.core.publisher.Mono;
+
+import java.io.InputStream;
+
+/**
+ * <p>Stores the payloads too large to be sent via SQS, so that only a reference to them is sent instead (claim-check pattern).</p>
+ * <p>Payloads are never deleted once their message is acknowledged, as it may still be redelivered or dead-lettered:
+ * the store is expected to expire them, after the retention period of the queue (and of its dead-letter queue),
+ * e.g. via an S3 lifecycle rule.</p>
+ * <p>Example, backed by S3:</p>
+ * <pre><code>
+ * &#64;Component
+ * public class S3PayloadStore implements PayloadStore {
+ *
+ *     &#64;Override
+ *     public Mono&lt;String&gt; store(String queueUrl, byte[] payload) {
+ *         var key = UUID.randomUUID().toString();
+ *         return Mono
+ *             .fromFuture(() -&gt; s3Client.putObject(
+ *                 builder -&gt; builder.bucket(yourBucket).key(key),
+ *                 AsyncRequestBody.fromBytes(payload)))
+ *             .thenReturn(key);
+ *     }
+ *
+ *     &#64;Override
+ *     public Mono&lt;InputStream&gt; fetch(String reference) {
+ *         return Mono
+ *             .fromFuture(() -&gt; s3Client.getObject(
+ *                 builder -&gt; builder.bucket(yourBucket).key(reference),
+ *                 AsyncResponseTransformer.toBlockingInputStream()))
+ *             .map(InputStream.class::cast);
+ *     }
+ *
+ * }
+ * </code></pre>
+ */
+public interface PayloadStore {
+
+    /**
+     * <p>Stores the given payload of a message sent to the given queue, and returns the reference to send instead.</p>
+     */
+    Mono<String> store(String queueUrl, byte[] payload);
+
+    /**
+     * <p>Opens the payload identified by the given reference, the returned stream is closed once read.</p>
+     * <p>The stream may block while reading, as it is only ever read on {@link reactor.core.scheduler.Schedulers#boundedElastic()}.</p>
+     */
+    Mono<InputStream> fetch(String reference);
+
+}
@@ -0,0 +1,138 @@
+package com.qudini.reactive.sqs.s3;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>Reads the content of S3 objects via the {@link S3ObjectSource}, resuming from the last byte received when a read fails,
+ * so that a transient failure doesn't restart the whole object.</p>
+ * <p>Up to the configured max resumptions are attempted in a row, the count being reset as soon as some content is received.</p>
+ */
+@Slf4j
+public final class ResumableS3ObjectReader {
+
+    private final S3ObjectSource source;
+
+    private final int maxResumptions;
+
+    private final Duration resumptionBackoff;
+
+    public ResumableS3ObjectReader(S3ObjectSource source, int maxResumptions, Duration resumptionBackoff) {
+        if (maxResumptions < 0) {
+            throw new IllegalArgumentException("The max resumptions must not be negative, got " + maxResumptions);
+        }
+        this.source = source;
+        this.maxResumptions = maxResumptions;
+        this.resumptionBackoff = resumptionBackoff;
+    }
+
+    /**
+     * <p>The content of the given object, as a backpressured stream of buffers.</p>
+     */
+    public Flux<ByteBuffer> read(S3ObjectLocation location) {
+        return Flux.defer(() -> {
+            var offset = new AtomicLong(0);
+            return Flux
+                    .defer(() -> source.read(location, offset.get()))
+                    .doOnNext(buffer -> offset.addAndGet(buffer.remaining()))
+                    .retryWhen(Retry
+                            .backoff(maxResumptions, resumptionBackoff)
+                            .transientErrors(true)
+                            .doBeforeRetry(signal -> log.warn("Unable to read S3 object {}/{}, resuming from byte {}", location.getBucket(), location.getKey(), offset.get(), signal.failure())));
+        });
+    }
+
+    /**
+     * <p>The content of the given object, as a backpressured stream of UTF-8 lines.</p>
+     */
+    public Flux<String> readLines(S3ObjectLocation location) {
+        return lines(read(location));
+    }
+
+    /**
+     * <p>Splits the given UTF-8 content into lines, without their line terminators (<code>\n</code> or <code>\r\n</code>).</p>
+     */
+    public static Flux<String> lines(Flux<ByteBuffer> content) {
+        return Flux.defer(() -> {
+            // the remainder of the previous buffers, i.e. the beginning of the line they ended with:
+            var pending = new PendingBytes();
+            return content
+                    .concatMapIterable(buffer -> split(buffer, pending))
+                    .concatWith(Mono.fromSupplier(() -> pending.size > 0 ? pending.decode() : null));
+        });
+    }
+
+    /**
+     * <p>Scans the given buffer for line feeds, decoding the lines it contains as a whole straight from it,
+     * and only copying the segments spanning over several buffers.</p>
+     */
+    private static List<String> split(ByteBuffer buffer, PendingBytes pending) {
+        List<String> lines = new ArrayList<>();
+        var start = buffer.position();
+        var limit = buffer.limit();
+        for (var index = start; index < limit; index++) {
+            if (buffer.get(index) == '\n') {
+                if (pending.size == 0) {
+                    lines.add(decode(buffer, start, index - start));
+                } else {
+                    pending.append(buffer, start, index - start);
+                    lines.add(pending.decode());
+                }
+                start = index + 1;
+            }
+        }
+        pending.append(buffer, start, limit - start);
+        buffer.position(limit);
+        return lines;
+    }
+
+    private static String decode(ByteBuffer buffer, int offset, int length) {
+        if (length > 0 && buffer.get(offset + length - 1) == '\r') {
+            length--;
+        }
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, UTF_8);
+        }
+        var bytes = new byte[length];
+        buffer.get(offset, bytes, 0, length);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * <p>Unsynchronised growable byte array, only ever accessed by the sequential splitting of a same content.</p>
+     */
+    private static final class PendingBytes {
+
+        private byte[] bytes = new byte[256];
+
+        private int size;
+
+        void append(ByteBuffer buffer, int offset, int length) {
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+            }
+            buffer.get(offset, bytes, size, length);
+            size += length;
+        }
+
+        String decode() {
+            var length = size > 0 && bytes[size - 1] == '\r' ? size - 1 : size;
+            var line = new String(bytes, 0, length, UTF_8);
+            size = 0;
+            return line;
+        }
+
+    }
+
+}
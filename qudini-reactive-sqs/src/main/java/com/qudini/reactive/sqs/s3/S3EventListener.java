@@ -0,0 +1,87 @@
+package com.qudini.reactive.sqs.s3;
+
+import com.qudini.reactive.sqs.SqsListener;
+import com.qudini.reactive.sqs.message.Acknowledger;
+import com.qudini.reactive.sqs.message.S3Message;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * <p>Listens to the S3 event notifications sent to a queue, streaming the content of each object they are about,
+ * instead of loading it in memory.</p>
+ * <p>The message is acknowledged once all its records have been handled.</p>
+ * <p>Example:</p>
+ * <pre><code>
+ * &#64;Component
+ * public class YourS3EventListener extends S3EventListener {
+ *
+ *     public YourS3EventListener(ResumableS3ObjectReader reader) {
+ *         super(reader);
+ *     }
+ *
+ *     &#64;Override
+ *     public String getQueueName() {
+ *         return "your-sqs-queue";
+ *     }
+ *
+ *     &#64;Override
+ *     public Mono&lt;Void&gt; handleObject(S3Message.Record record, Flux&lt;ByteBuffer&gt; content) {
+ *         return ResumableS3ObjectReader
+ *             .lines(content)
+ *             .concatMap(line -&gt; process(line))
+ *             .then();
+ *     }
+ *
+ * }
+ * </code></pre>
+ */
+public abstract class S3EventListener implements SqsListener<S3Message> {
+
+    private final ResumableS3ObjectReader reader;
+
+    protected S3EventListener(ResumableS3ObjectReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * <p>Handles the content of the object the given record is about, as a backpressured stream.</p>
+     */
+    public abstract Mono<Void> handleObject(S3Message.Record record, Flux<ByteBuffer> content);
+
+    /**
+     * <p>The number of records of the same message whose objects are handled at the same time, defaults to 1.</p>
+     */
+    public int getRecordConcurrency() {
+        return 1;
+    }
+
+    /**
+     * <p>Whether the object the given record is about should be handled, defaults to the <code>ObjectCreated:*</code> events only.</p>
+     */
+    public boolean isHandled(S3Message.Record record) {
+        return Optional
+                .ofNullable(record.getEventName())
+                .filter(eventName -> eventName.startsWith("ObjectCreated:"))
+                .isPresent();
+    }
+
+    @Override
+    public final Class<S3Message> getMessageType() {
+        return S3Message.class;
+    }
+
+    @Override
+    public Mono<Void> handleMessage(S3Message message, Acknowledger acknowledger) {
+        var records = Optional.ofNullable(message.getRecords()).orElseGet(List::of);
+        return Flux
+                .fromIterable(records)
+                .filter(this::isHandled)
+                .flatMap(record -> handleObject(record, reader.read(S3ObjectLocation.of(record))), getRecordConcurrency())
+                .then(acknowledger.acknowledge());
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.qudini.reactive.sqs.s3;
+
+import com.qudini.reactive.sqs.message.S3Message;
+import lombok.Value;
+
+import java.net.URLDecoder;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>The S3 object an event record is about.</p>
+ */
+@Value
+public class S3ObjectLocation {
+
+    String bucket;
+
+    /**
+     * <p>The decoded key (keys are URL-encoded in the event notifications).</p>
+     */
+    String key;
+
+    Optional<String> versionId;
+
+    /**
+     * <p>The ETag of the object when the event occurred, so that resumed reads can make sure they read the same content.</p>
+     */
+    Optional<String> eTag;
+
+    long size;
+
+    public static S3ObjectLocation of(S3Message.Record record) {
+        var s3 = record.getS3();
+        var object = s3.getObject();
+        return new S3ObjectLocation(
+                s3.getBucket().getName(),
+                URLDecoder.decode(object.getKey(), UTF_8),
+                Optional.ofNullable(object.getVersionId()),
+                Optional.ofNullable(object.getETag()),
+                object.getSize()
+        );
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.qudini.reactive.sqs.s3;
+
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Reads the content of S3 objects as a backpressured stream, from a given offset, typically via ranged GETs.</p>
+ * <p>Example, backed by the asynchronous S3 client:</p>
+ * <pre><code>
+ * &#64;Component
+ * public class S3ClientObjectSource implements S3ObjectSource {
+ *
+ *     &#64;Override
+ *     public Flux&lt;ByteBuffer&gt; read(S3ObjectLocation location, long offset) {
+ *         // S3 answers 416 to a range starting at the end of the object, e.g. when empty or resumed once fully read:
+ *         if (offset &gt;= location.getSize()) {
+ *             return Flux.empty();
+ *         }
+ *         return Mono
+ *             .fromFuture(() -&gt; s3Client.getObject(
+ *                 builder -&gt; {
+ *                     builder.bucket(location.getBucket()).key(location.getKey());
+ *                     if (offset &gt; 0) {
+ *                         builder.range("bytes=" + offset + "-");
+ *                     }
+ *                     location.getVersionId().ifPresent(builder::versionId);
+ *                     location.getETag().ifPresent(builder::ifMatch);
+ *                 },
+ *                 AsyncResponseTransformer.toPublisher()))
+ *             .flatMapMany(Flux::from);
+ *     }
+ *
+ * }
+ * </code></pre>
+ */
+@FunctionalInterface
+public interface S3ObjectSource {
+
+    /**
+     * <p>Reads the content of the given object, starting at the given offset (in bytes) up to its end,
+     * completing empty if the offset is already at its end.</p>
+     */
+    Flux<ByteBuffer> read(S3ObjectLocation location, long offset);
+
+}
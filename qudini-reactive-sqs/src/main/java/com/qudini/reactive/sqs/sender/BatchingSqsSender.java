@@ -0,0 +1,269 @@
+package com.qudini.reactive.sqs.sender;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.qudini.reactive.logging.Log;
+import com.qudini.reactive.sqs.SqsSender;
+import com.qudini.reactive.sqs.payload.ClaimCheck;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.SqsException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>Coalesces the messages sent to a queue into <code>SendMessageBatch</code> calls.</p>
+ * <p>A batch is flushed as soon as it reaches {@value #MAX_BATCH_SIZE} entries (the SQS limit),
+ * or when its oldest entry has been waiting for the configured max delay.
+ * Batches that would exceed {@value #MAX_BATCH_BYTES} bytes (the SQS limit) are split.</p>
+ * <p>Batches are sent concurrently, except for FIFO queues (URL ending with <code>.fifo</code>),
+ * whose batches are sent one after the other so that the messages keep the order they were sent in.</p>
+ * <p>The correlation id of the sender, if any, is propagated via a message attribute.
+ * The bodies exceeding the threshold of the {@link ClaimCheck}, if any, are offloaded to its store.</p>
+ */
+@Slf4j
+public final class BatchingSqsSender<T> implements SqsSender<T>, Disposable {
+
+    public static final int MAX_BATCH_SIZE = 10;
+
+    public static final int MAX_BATCH_BYTES = 256 * 1024;
+
+    private final SqsAsyncClient sqsClient;
+
+    private final ObjectWriter objectWriter;
+
+    private final String queueUrl;
+
+    private final String correlationIdAttributeName;
+
+    private final Optional<ClaimCheck> claimCheck;
+
+    private final Sinks.Many<PendingMessage> pendingMessages = Sinks.many().unicast().onBackpressureBuffer();
+
+    private final Disposable flushes;
+
+    private final Sinks.Empty<Void> flushed = Sinks.empty();
+
+    public BatchingSqsSender(SqsAsyncClient sqsClient, ObjectWriter objectWriter, String queueUrl, Duration maxDelay, String correlationIdAttributeName, Optional<ClaimCheck> claimCheck) {
+        this.sqsClient = sqsClient;
+        this.objectWriter = objectWriter;
+        this.queueUrl = queueUrl;
+        this.correlationIdAttributeName = correlationIdAttributeName;
+        this.claimCheck = claimCheck;
+        var batches = pendingMessages
+                .asFlux()
+                .bufferTimeout(MAX_BATCH_SIZE, maxDelay, true)
+                .flatMapIterable(BatchingSqsSender::splitBySize);
+        // FIFO queues get their batches one after the other, for the messages of a same group not to be reordered:
+        this.flushes = (isFifo(queueUrl) ? batches.concatMap(this::flush) : batches.flatMap(this::flush))
+                .doFinally(signal -> flushed.tryEmitEmpty())
+                .subscribe();
+    }
+
+    @Override
+    public Mono<SentMessage> send(T message, Consumer<SendMessageBatchRequestEntry.Builder> customiser) {
+        return Log
+                .getCorrelationId()
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .map(correlationId -> buildEntry(message, customiser, correlationId))
+                .flatMap(this::offloadIfNeeded)
+                .flatMap(entry -> {
+                    var pendingMessage = new PendingMessage(entry, getSize(entry), Sinks.one());
+                    if (pendingMessage.getSize() > MAX_BATCH_BYTES) {
+                        return Mono.error(new IllegalArgumentException("Messages sent to queue " + queueUrl + " must not exceed " + MAX_BATCH_BYTES + " bytes, got " + pendingMessage.getSize()));
+                    }
+                    if (!emit(pendingMessage)) {
+                        return Mono.error(new IllegalStateException("The sender of queue " + queueUrl + " is closed"));
+                    }
+                    return pendingMessage.getResult().asMono();
+                });
+    }
+
+    /**
+     * <p>Queues the given message for the next batch, the emissions being serialised
+     * so that concurrent sends wait for their turn instead of busy looping.</p>
+     * <p>Returns false if the sender doesn't accept messages anymore (closed or disposed).</p>
+     */
+    private boolean emit(PendingMessage pendingMessage) {
+        synchronized (pendingMessages) {
+            return pendingMessages.tryEmitNext(pendingMessage).isSuccess();
+        }
+    }
+
+    /**
+     * <p>Flushes the pending messages, then stops accepting new ones: sending fails afterwards.</p>
+     */
+    public void close() {
+        synchronized (pendingMessages) {
+            pendingMessages.tryEmitComplete();
+        }
+    }
+
+    /**
+     * <p>Same as {@link #close()}, but completes once the pending messages have actually been sent.</p>
+     */
+    public Mono<Void> drain() {
+        return Mono.defer(() -> {
+            close();
+            return flushed.asMono();
+        });
+    }
+
+    @Override
+    public void dispose() {
+        flushes.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return flushes.isDisposed();
+    }
+
+    private static boolean isFifo(String queueUrl) {
+        return queueUrl.endsWith(".fifo");
+    }
+
+    private SendMessageBatchRequestEntry buildEntry(T message, Consumer<SendMessageBatchRequestEntry.Builder> customiser, Optional<String> correlationId) {
+        var builder = SendMessageBatchRequestEntry
+                .builder()
+                .messageBody(serialise(message));
+        customiser.accept(builder);
+        var entry = builder.build();
+        if (correlationId.isEmpty() || entry.messageAttributes().containsKey(correlationIdAttributeName)) {
+            return entry;
+        }
+        var messageAttributes = new HashMap<>(entry.messageAttributes());
+        messageAttributes.put(correlationIdAttributeName, MessageAttributeValue.builder().dataType("String").stringValue(correlationId.get()).build());
+        return entry.toBuilder().messageAttributes(messageAttributes).build();
+    }
+
+    private Mono<SendMessageBatchRequestEntry> offloadIfNeeded(SendMessageBatchRequestEntry entry) {
+        return claimCheck
+                .filter(configured -> getSize(entry) > configured.getThreshold())
+                .map(configured -> configured.offload(queueUrl, entry))
+                .orElseGet(() -> Mono.just(entry));
+    }
+
+    private String serialise(T message) {
+        try {
+            return objectWriter.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Unable to serialise a message sent to queue " + queueUrl, e);
+        }
+    }
+
+    /**
+     * <p>The size SQS accounts for: the body, plus the name, type and value of each message attribute.</p>
+     */
+    private static int getSize(SendMessageBatchRequestEntry entry) {
+        var size = entry.messageBody().getBytes(UTF_8).length;
+        for (var attribute : entry.messageAttributes().entrySet()) {
+            var value = attribute.getValue();
+            size += attribute.getKey().getBytes(UTF_8).length;
+            size += value.dataType().getBytes(UTF_8).length;
+            size += Optional.ofNullable(value.stringValue()).map(stringValue -> stringValue.getBytes(UTF_8).length).orElse(0);
+            size += Optional.ofNullable(value.binaryValue()).map(SdkBytes::asByteArray).map(bytes -> bytes.length).orElse(0);
+        }
+        return size;
+    }
+
+    private static List<List<PendingMessage>> splitBySize(List<PendingMessage> buffer) {
+        List<List<PendingMessage>> batches = new ArrayList<>();
+        List<PendingMessage> batch = new ArrayList<>();
+        var batchSize = 0;
+        for (var pendingMessage : buffer) {
+            if (!batch.isEmpty() && batchSize + pendingMessage.getSize() > MAX_BATCH_BYTES) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchSize = 0;
+            }
+            batch.add(pendingMessage);
+            batchSize += pendingMessage.getSize();
+        }
+        batches.add(batch);
+        return batches;
+    }
+
+    private Mono<Void> flush(List<PendingMessage> batch) {
+        return Mono
+                .fromFuture(() -> sqsClient.sendMessageBatch(buildRequest(batch)))
+                .doOnNext(response -> complete(batch, response))
+                .doOnError(error -> fail(batch, error))
+                .doFinally(signal -> failMissing(batch))
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    private SendMessageBatchRequest buildRequest(List<PendingMessage> batch) {
+        var entries = IntStream
+                .range(0, batch.size())
+                .mapToObj(index -> batch.get(index).getEntry().toBuilder().id(String.valueOf(index)).build())
+                .toList();
+        return SendMessageBatchRequest
+                .builder()
+                .queueUrl(queueUrl)
+                .entries(entries)
+                .build();
+    }
+
+    private void complete(List<PendingMessage> batch, SendMessageBatchResponse response) {
+        response.successful().forEach(entry -> succeed(batch, entry));
+        response.failed().forEach(entry -> fail(batch, entry));
+    }
+
+    private void succeed(List<PendingMessage> batch, SendMessageBatchResultEntry entry) {
+        var sentMessage = new SentMessage(entry.messageId(), Optional.ofNullable(entry.sequenceNumber()));
+        batch.get(Integer.parseInt(entry.id())).getResult().tryEmitValue(sentMessage);
+    }
+
+    private void fail(List<PendingMessage> batch, BatchResultErrorEntry entry) {
+        var error = SqsException
+                .builder()
+                .message("Unable to send message to queue " + queueUrl + ": " + entry.message())
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode(entry.code()).errorMessage(entry.message()).build())
+                .build();
+        batch.get(Integer.parseInt(entry.id())).getResult().tryEmitError(error);
+    }
+
+    private void fail(List<PendingMessage> batch, Throwable error) {
+        log.debug("Unable to send a batch of {} messages to queue {}", batch.size(), queueUrl, error);
+        batch.forEach(pendingMessage -> pendingMessage.getResult().tryEmitError(error));
+    }
+
+    private void failMissing(List<PendingMessage> batch) {
+        batch.forEach(pendingMessage -> pendingMessage
+                .getResult()
+                .tryEmitError(new IllegalStateException("No sending result returned by SQS for a message of queue " + queueUrl)));
+    }
+
+    @Value
+    private static class PendingMessage {
+
+        SendMessageBatchRequestEntry entry;
+        int size;
+        Sinks.One<SentMessage> result;
+
+    }
+
+}
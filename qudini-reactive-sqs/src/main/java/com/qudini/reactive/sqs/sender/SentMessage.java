@@ -0,0 +1,23 @@
+package com.qudini.reactive.sqs.sender;
+
+import lombok.Value;
+
+import java.util.Optional;
+
+/**
+ * <p>The result of a successfully sent message.</p>
+ */
+@Value
+public class SentMessage {
+
+    /**
+     * <p>The id SQS assigned to the message.</p>
+     */
+    String messageId;
+
+    /**
+     * <p>The sequence number SQS assigned to the message, only available for FIFO queues.</p>
+     */
+    Optional<String> sequenceNumber;
+
+}
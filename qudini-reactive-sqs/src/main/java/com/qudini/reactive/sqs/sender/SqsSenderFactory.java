@@ -0,0 +1,64 @@
+package com.qudini.reactive.sqs.sender;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qudini.reactive.sqs.SqsSender;
+import com.qudini.reactive.sqs.payload.ClaimCheck;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Creates the {@link SqsSender senders}, one per queue URL, so that all the messages sent to the same queue share the same batches.</p>
+ */
+@Slf4j
+public final class SqsSenderFactory {
+
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(10);
+
+    private final SqsAsyncClient sqsClient;
+
+    private final ObjectMapper objectMapper;
+
+    private final Duration maxDelay;
+
+    private final String correlationIdAttributeName;
+
+    private final Optional<ClaimCheck> claimCheck;
+
+    private final Map<String, BatchingSqsSender<?>> senders = new ConcurrentHashMap<>();
+
+    public SqsSenderFactory(SqsAsyncClient sqsClient, ObjectMapper objectMapper, Duration maxDelay, String correlationIdAttributeName, Optional<ClaimCheck> claimCheck) {
+        this.sqsClient = sqsClient;
+        this.objectMapper = objectMapper;
+        this.maxDelay = maxDelay;
+        this.correlationIdAttributeName = correlationIdAttributeName;
+        this.claimCheck = claimCheck;
+    }
+
+    /**
+     * <p>The sender of the queue identified by the given URL.</p>
+     */
+    @SuppressWarnings("unchecked")
+    public <T> SqsSender<T> create(String queueUrl) {
+        return (SqsSender<T>) senders.computeIfAbsent(queueUrl, url -> new BatchingSqsSender<>(sqsClient, objectMapper.writer(), url, maxDelay, correlationIdAttributeName, claimCheck));
+    }
+
+    /**
+     * <p>Flushes the pending messages of all the queues, waiting up to 10 seconds for them to be sent.</p>
+     */
+    public void close() {
+        Flux
+                .fromIterable(senders.values())
+                .flatMap(BatchingSqsSender::drain)
+                .then()
+                .timeout(DRAIN_TIMEOUT, Mono.fromRunnable(() -> log.warn("Pending SQS messages not sent after {}", DRAIN_TIMEOUT)))
+                .block();
+    }
+
+}
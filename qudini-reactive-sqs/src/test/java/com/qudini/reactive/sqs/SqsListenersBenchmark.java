@@ -0,0 +1,136 @@
+package com.qudini.reactive.sqs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qudini.reactive.sqs.listener.SqsListeners;
+import com.qudini.reactive.sqs.listener.SqsListenersSettings;
+import com.qudini.reactive.sqs.message.Acknowledger;
+import com.qudini.reactive.sqs.message.DefaultSqsMessageChecker;
+import com.qudini.reactive.sqs.message.SqsMessageCheckerSettings;
+import com.qudini.reactive.tests.sqs.InMemorySqsAsyncClient;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <p>Measures the throughput of the listeners against an in-memory SQS, with listeners acknowledging straight away,
+ * so that the time per message is the overhead of the polling, dispatching and acknowledging pipeline.</p>
+ * <p>Not run as part of the build, run it via <code>mvn test -pl qudini-reactive-sqs -Dtest=SqsListenersBenchmark</code>,
+ * optionally with <code>-Dbenchmark.messages=N</code> (defaults to 20000).</p>
+ */
+@Slf4j
+@DisplayName("SqsListeners benchmark")
+class SqsListenersBenchmark {
+
+    private static final int MESSAGES = Integer.getInteger("benchmark.messages", 20_000);
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(5);
+
+    @ParameterizedTest(name = "latency={0}ms, pollers={1}, max-pollers={2}, max-in-flight={3}")
+    @CsvSource({
+            "0, 1, 0, 0",
+            "0, 4, 0, 0",
+            "5, 1, 0, 0",
+            "5, 4, 0, 0",
+            "5, 1, 8, 0",
+            "5, 4, 0, 40"
+    })
+    @DisplayName("should handle the messages")
+    void benchmark(int latency, int pollers, int maxPollers, int maxInFlight) {
+        // warm-up:
+        run(MESSAGES / 10, latency, pollers, maxPollers, maxInFlight);
+        var elapsed = run(MESSAGES, latency, pollers, maxPollers, maxInFlight);
+        log.info(
+                "latency={}ms, pollers={}, max-pollers={}, max-in-flight={}: {} messages in {}ms, {} messages/s, {}us/message",
+                latency,
+                pollers,
+                maxPollers,
+                maxInFlight,
+                MESSAGES,
+                elapsed.toMillis(),
+                MESSAGES * 1_000_000_000L / Math.max(1, elapsed.toNanos()),
+                elapsed.toNanos() / 1000 / MESSAGES
+        );
+    }
+
+    @SneakyThrows
+    private Duration run(int messages, int latency, int pollers, int maxPollers, int maxInFlight) {
+        try (var sqsClient = new InMemorySqsAsyncClient(Duration.ofMillis(latency))) {
+            var queueUrl = sqsClient.createQueue("the-queue-name");
+            sendMessages(sqsClient, queueUrl, messages);
+            var sqsMessageChecker = new DefaultSqsMessageChecker(
+                    sqsClient,
+                    new ObjectMapper(),
+                    SqsMessageCheckerSettings.builder().defaultMaxInFlight(maxInFlight).build()
+            );
+            var sqsListeners = new SqsListeners(
+                    List.of(new BenchmarkListener()),
+                    sqsClient,
+                    sqsMessageChecker,
+                    (correlationId, loggingContext) -> Context.empty(),
+                    SqsListenersSettings.builder().defaultPollers(pollers).defaultMaxPollers(maxPollers).drainTimeout(Duration.ofSeconds(5)).build()
+            );
+            var start = System.nanoTime();
+            sqsListeners.start();
+            try {
+                var deadline = start + TIMEOUT.toNanos();
+                while (sqsClient.getVisibleMessages(queueUrl) + sqsClient.getInFlightMessages(queueUrl) > 0) {
+                    assertThat(System.nanoTime()).as("all the messages should have been handled within %s", TIMEOUT).isLessThan(deadline);
+                    Thread.sleep(1);
+                }
+                return Duration.ofNanos(System.nanoTime() - start);
+            } finally {
+                sqsListeners.stop();
+                sqsMessageChecker.close();
+            }
+        }
+    }
+
+    private static void sendMessages(InMemorySqsAsyncClient sqsClient, String queueUrl, int messages) {
+        var responses = IntStream
+                .range(0, (messages + 9) / 10)
+                .mapToObj(batch -> IntStream
+                        .range(batch * 10, Math.min(messages, batch * 10 + 10))
+                        .mapToObj(index -> SendMessageBatchRequestEntry
+                                .builder()
+                                .id(String.valueOf(index))
+                                .messageBody("\"message #" + index + "\"")
+                                .build())
+                        .toList())
+                .map(entries -> sqsClient.sendMessageBatch(SendMessageBatchRequest.builder().queueUrl(queueUrl).entries(entries).build()))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(responses).join();
+    }
+
+    private static final class BenchmarkListener implements SqsListener<String> {
+
+        @Override
+        public String getQueueName() {
+            return "the-queue-name";
+        }
+
+        @Override
+        public Class<String> getMessageType() {
+            return String.class;
+        }
+
+        @Override
+        public Mono<Void> handleMessage(String message, Acknowledger acknowledger) {
+            return acknowledger.acknowledge();
+        }
+
+    }
+
+}
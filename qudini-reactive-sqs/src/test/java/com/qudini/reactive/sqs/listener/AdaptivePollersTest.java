@@ -0,0 +1,59 @@
+package com.qudini.reactive.sqs.listener;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("AdaptivePollers")
+class AdaptivePollersTest {
+
+    @Test
+    @DisplayName("should start the min number of pollers")
+    void start() {
+        var adaptivePollers = new AdaptivePollers("the-queue-url", 2, 4);
+        var startedPollers = new ArrayList<Integer>();
+        adaptivePollers.start().subscribe(startedPollers::add);
+        assertThat(startedPollers).containsExactly(0, 1);
+        assertThat(adaptivePollers.getActivePollers()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("should start another poller on full receives, up to the max")
+    void scaleUp() {
+        var adaptivePollers = new AdaptivePollers("the-queue-url", 1, 3);
+        var startedPollers = new ArrayList<Integer>();
+        adaptivePollers.start().subscribe(startedPollers::add);
+        assertThat(adaptivePollers.onReceived(10, 10)).isTrue();
+        assertThat(adaptivePollers.onReceived(5, 10)).isTrue();
+        assertThat(adaptivePollers.onReceived(10, 10)).isTrue();
+        assertThat(adaptivePollers.onReceived(10, 10)).isTrue();
+        assertThat(startedPollers).containsExactly(0, 1, 2);
+        assertThat(adaptivePollers.getActivePollers()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("should stop the polling poller on empty receives, down to the min")
+    void scaleDown() {
+        var adaptivePollers = new AdaptivePollers("the-queue-url", 1, 3);
+        adaptivePollers.start().subscribe();
+        adaptivePollers.onReceived(10, 10);
+        assertThat(adaptivePollers.onReceived(0, 10)).isFalse();
+        assertThat(adaptivePollers.onReceived(0, 10)).isTrue();
+        assertThat(adaptivePollers.getActivePollers()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should not scale if the max is not above the min")
+    void fixed() {
+        var adaptivePollers = new AdaptivePollers("the-queue-url", 2, 0);
+        adaptivePollers.start().subscribe();
+        assertThat(adaptivePollers.onReceived(10, 10)).isTrue();
+        assertThat(adaptivePollers.onReceived(0, 10)).isTrue();
+        assertThat(adaptivePollers.getActivePollers()).isEqualTo(2);
+        assertThat(adaptivePollers.getMaxPollers()).isEqualTo(2);
+    }
+
+}
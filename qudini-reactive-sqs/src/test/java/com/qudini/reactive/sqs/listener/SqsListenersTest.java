@@ -4,12 +4,15 @@ import com.qudini.reactive.logging.ReactiveLoggingContextCreator;
 import com.qudini.reactive.sqs.SqsListener;
 import com.qudini.reactive.sqs.message.Acknowledger;
 import com.qudini.reactive.sqs.message.SqsMessageChecker;
+import com.qudini.reactive.sqs.metrics.MicrometerSqsMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.health.Status;
 import reactor.core.publisher.Mono;
 import reactor.util.context.Context;
 import software.amazon.awssdk.services.sqs.SqsAsyncClient;
@@ -17,6 +20,7 @@ import software.amazon.awssdk.services.sqs.model.GetQueueUrlRequest;
 import software.amazon.awssdk.services.sqs.model.GetQueueUrlResponse;
 
 import java.time.Duration;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -24,11 +28,15 @@ import java.util.concurrent.atomic.AtomicInteger;
 import static java.time.temporal.ChronoUnit.MILLIS;
 import static java.util.concurrent.CompletableFuture.completedFuture;
 import static java.util.concurrent.CompletableFuture.runAsync;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
@@ -54,6 +62,8 @@ class SqsListenersTest {
 
     };
 
+    private final SqsListenersSettings settings = SqsListenersSettings.builder().drainTimeout(Duration.ofSeconds(5)).build();
+
     @Mock
     private SqsAsyncClient sqsClient;
 
@@ -64,7 +74,7 @@ class SqsListenersTest {
     private ReactiveLoggingContextCreator reactiveLoggingContextCreator;
 
     @Test
-    @DisplayName("should not start the long polling if the queue URL cannot be found")
+    @DisplayName("should not start the long polling while the queue URL cannot be found")
     void queueNotFound() {
         var getQueueUrlRequest = GetQueueUrlRequest.builder()
                 .queueName("the-queue-name")
@@ -99,6 +109,167 @@ class SqsListenersTest {
 
     }
 
+    @Test
+    @DisplayName("should retry resolving the queue URL, and report the queue as polled once resolved")
+    void queueUrlRetry() throws Exception {
+
+        var getQueueUrlRequest = GetQueueUrlRequest.builder()
+                .queueName("the-queue-name")
+                .build();
+        var getQueueUrlResponse = GetQueueUrlResponse.builder()
+                .queueUrl("the-queue-url")
+                .build();
+        given(sqsClient.getQueueUrl(getQueueUrlRequest))
+                .willReturn(CompletableFuture.failedFuture(new IllegalStateException("fake queue url error")))
+                .willReturn(completedFuture(getQueueUrlResponse));
+        given(sqsMessageChecker.checkForMessages("the-queue-url", listener)).willReturn(Mono.delay(Duration.of(10, MILLIS)).thenReturn(0));
+        given(reactiveLoggingContextCreator.create()).willReturn(Context.empty());
+
+        var sqsListeners = new SqsListeners(Set.of(listener), sqsClient, sqsMessageChecker, reactiveLoggingContextCreator, settings);
+        var healthIndicator = new SqsListenersHealthIndicator(sqsListeners);
+        try {
+            runAsync(sqsListeners::start);
+            Thread.sleep(100);
+            assertThat(sqsListeners.getPollingQueues()).containsExactly(entry("the-queue-name", false));
+            assertThat(healthIndicator.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+            Thread.sleep(2500);
+            assertThat(sqsListeners.getPollingQueues()).containsExactly(entry("the-queue-name", true));
+            assertThat(healthIndicator.health().getStatus()).isEqualTo(Status.UP);
+        } finally {
+            sqsListeners.stop();
+        }
+
+        verify(sqsClient, times(2)).getQueueUrl(getQueueUrlRequest);
+        assertThat(sqsListeners.getPollingQueues()).containsExactly(entry("the-queue-name", false));
+
+    }
+
+    @Test
+    @DisplayName("should give up on the queue once the queue URL retries are exhausted")
+    void queueUrlRetriesExhausted() throws Exception {
+
+        var getQueueUrlRequest = GetQueueUrlRequest.builder()
+                .queueName("the-queue-name")
+                .build();
+        given(sqsClient.getQueueUrl(getQueueUrlRequest)).willReturn(CompletableFuture.failedFuture(new IllegalStateException("fake queue url error")));
+
+        var sqsListeners = new SqsListeners(Set.of(listener), sqsClient, sqsMessageChecker, reactiveLoggingContextCreator, settings.toBuilder().queueUrlMaxRetries(1).build());
+        try {
+            runAsync(sqsListeners::start);
+            Thread.sleep(2500);
+        } finally {
+            sqsListeners.stop();
+        }
+
+        verify(sqsClient, times(2)).getQueueUrl(getQueueUrlRequest);
+        verify(sqsMessageChecker, never()).checkForMessages(any(String.class), any(SqsListener.class));
+
+    }
+
+    @Test
+    @DisplayName("should stop retrying resolving the queue URL when draining")
+    void queueUrlRetryDrain() throws Exception {
+
+        var getQueueUrlRequest = GetQueueUrlRequest.builder()
+                .queueName("the-queue-name")
+                .build();
+        given(sqsClient.getQueueUrl(getQueueUrlRequest)).willReturn(CompletableFuture.failedFuture(new IllegalStateException("fake queue url error")));
+
+        var sqsListeners = new SqsListeners(Set.of(listener), sqsClient, sqsMessageChecker, reactiveLoggingContextCreator, settings);
+        runAsync(sqsListeners::start);
+        Thread.sleep(100);
+        var stopStart = System.nanoTime();
+        sqsListeners.stop();
+        var stopDuration = Duration.ofNanos(System.nanoTime() - stopStart);
+        Thread.sleep(2000);
+
+        assertThat(stopDuration).isLessThan(Duration.ofSeconds(1));
+        verify(sqsClient, times(1)).getQueueUrl(getQueueUrlRequest);
+
+    }
+
+    @Test
+    @DisplayName("should stop retrying the polling when draining")
+    void pollRetryDrain() throws Exception {
+
+        var getQueueUrlRequest = GetQueueUrlRequest.builder()
+                .queueName("the-queue-name")
+                .build();
+        var getQueueUrlResponse = GetQueueUrlResponse.builder()
+                .queueUrl("the-queue-url")
+                .build();
+        given(sqsClient.getQueueUrl(getQueueUrlRequest)).willReturn(completedFuture(getQueueUrlResponse));
+
+        var callCount = new AtomicInteger(0);
+        var fakeMessageChecking = Mono
+                .fromRunnable(callCount::incrementAndGet)
+                .then(Mono.<Integer>error(new IllegalStateException("fake message checking error")));
+        given(sqsMessageChecker.checkForMessages("the-queue-url", listener)).willReturn(fakeMessageChecking);
+        given(reactiveLoggingContextCreator.create()).willReturn(Context.empty());
+
+        var sqsListeners = new SqsListeners(Set.of(listener), sqsClient, sqsMessageChecker, reactiveLoggingContextCreator, settings);
+        runAsync(sqsListeners::start);
+        Thread.sleep(100);
+        var stopStart = System.nanoTime();
+        sqsListeners.stop();
+        var stopDuration = Duration.ofNanos(System.nanoTime() - stopStart);
+        Thread.sleep(2000);
+
+        assertThat(stopDuration).isLessThan(Duration.ofSeconds(1));
+        assertThat(callCount.get()).isEqualTo(1);
+
+    }
+
+    @Test
+    @DisplayName("should refuse negative queue URL max retries")
+    void negativeQueueUrlMaxRetries() {
+        var sqsListeners = Set.<SqsListener<?>>of(listener);
+        var thrownException = assertThrows(
+                IllegalArgumentException.class,
+                () -> new SqsListeners(sqsListeners, sqsClient, sqsMessageChecker, reactiveLoggingContextCreator, settings.toBuilder().queueUrlMaxRetries(-1).build())
+        );
+        assertThat(thrownException.getMessage()).isEqualTo("The queue URL max retries must not be negative, got -1");
+    }
+
+    @Test
+    @DisplayName("should not look up the queue URLs set by the listeners")
+    void staticQueueUrl() {
+
+        var listenerWithQueueUrl = new SqsListener<String>() {
+
+            @Override
+            public String getQueueName() {
+                return "the-queue-name";
+            }
+
+            @Override
+            public Optional<String> getQueueUrl() {
+                return Optional.of("the-queue-url");
+            }
+
+            @Override
+            public Class<String> getMessageType() {
+                throw new IllegalStateException("shouldn't have been called");
+            }
+
+            @Override
+            public Mono<Void> handleMessage(String message, Acknowledger acknowledger) {
+                throw new IllegalStateException("shouldn't have been called");
+            }
+
+        };
+
+        var callCount = new AtomicInteger(0);
+        given(sqsMessageChecker.checkForMessages("the-queue-url", listenerWithQueueUrl)).willReturn(waitThenIncrement(callCount));
+        given(reactiveLoggingContextCreator.create()).willReturn(Context.empty());
+
+        startAndStop(listenerWithQueueUrl);
+
+        verify(sqsClient, never()).getQueueUrl(any(GetQueueUrlRequest.class));
+        assertThat(callCount.get()).isGreaterThanOrEqualTo(2);
+
+    }
+
     @Test
     @DisplayName("should keep the long polling up if an error occurs while handling a message")
     void messageHandlerError() {
@@ -112,7 +283,7 @@ class SqsListenersTest {
         given(sqsClient.getQueueUrl(getQueueUrlRequest)).willReturn(completedFuture(getQueueUrlResponse));
 
         var callCount = new AtomicInteger(0);
-        var fakeMessageChecking = waitThenIncrement(callCount).then(Mono.<Void>error(new IllegalStateException("fake message checking error")));
+        var fakeMessageChecking = waitThenIncrement(callCount).then(Mono.<Integer>error(new IllegalStateException("fake message checking error")));
         given(sqsMessageChecker.checkForMessages("the-queue-url", listener)).willReturn(fakeMessageChecking);
         given(reactiveLoggingContextCreator.create()).willReturn(Context.empty());
 
@@ -122,15 +293,234 @@ class SqsListenersTest {
 
     }
 
-    @SneakyThrows
+    @Test
+    @DisplayName("should run as many concurrent pollers as configured")
+    void pollers() {
+
+        var listenerWithPollers = new SqsListener<String>() {
+
+            @Override
+            public String getQueueName() {
+                return "the-queue-name";
+            }
+
+            @Override
+            public Optional<Integer> getPollers() {
+                return Optional.of(3);
+            }
+
+            @Override
+            public Class<String> getMessageType() {
+                throw new IllegalStateException("shouldn't have been called");
+            }
+
+            @Override
+            public Mono<Void> handleMessage(String message, Acknowledger acknowledger) {
+                throw new IllegalStateException("shouldn't have been called");
+            }
+
+        };
+
+        var getQueueUrlRequest = GetQueueUrlRequest.builder()
+                .queueName("the-queue-name")
+                .build();
+        var getQueueUrlResponse = GetQueueUrlResponse.builder()
+                .queueUrl("the-queue-url")
+                .build();
+        given(sqsClient.getQueueUrl(getQueueUrlRequest)).willReturn(completedFuture(getQueueUrlResponse));
+
+        var activePollers = new AtomicInteger(0);
+        var maxActivePollers = new AtomicInteger(0);
+        var fakeMessageChecking = Mono.defer(() -> {
+            maxActivePollers.accumulateAndGet(activePollers.incrementAndGet(), Math::max);
+            return Mono.delay(Duration.of(50, MILLIS)).doOnTerminate(activePollers::decrementAndGet).then(Mono.<Integer>empty());
+        });
+        given(sqsMessageChecker.checkForMessages("the-queue-url", listenerWithPollers)).willReturn(fakeMessageChecking);
+        given(reactiveLoggingContextCreator.create()).willReturn(Context.empty());
+
+        startAndStop(listenerWithPollers);
+
+        assertThat(maxActivePollers.get()).isEqualTo(3);
+
+    }
+
+    @Test
+    @DisplayName("should scale the pollers up on full receives, and down on empty ones")
+    void adaptivePollers() throws Exception {
+
+        var adaptiveListener = new SqsListener<String>() {
+
+            @Override
+            public String getQueueName() {
+                return "the-queue-name";
+            }
+
+            @Override
+            public Optional<Integer> getMaxPollers() {
+                return Optional.of(3);
+            }
+
+            @Override
+            public Class<String> getMessageType() {
+                throw new IllegalStateException("shouldn't have been called");
+            }
+
+            @Override
+            public Mono<Void> handleMessage(String message, Acknowledger acknowledger) {
+                throw new IllegalStateException("shouldn't have been called");
+            }
+
+        };
+
+        var getQueueUrlRequest = GetQueueUrlRequest.builder()
+                .queueName("the-queue-name")
+                .build();
+        var getQueueUrlResponse = GetQueueUrlResponse.builder()
+                .queueUrl("the-queue-url")
+                .build();
+        given(sqsClient.getQueueUrl(getQueueUrlRequest)).willReturn(completedFuture(getQueueUrlResponse));
+
+        var receivedMessages = new AtomicInteger(10);
+        var fakeMessageChecking = Mono.delay(Duration.of(10, MILLIS)).then(Mono.fromSupplier(receivedMessages::get));
+        given(sqsMessageChecker.checkForMessages("the-queue-url", adaptiveListener)).willReturn(fakeMessageChecking);
+        given(reactiveLoggingContextCreator.create()).willReturn(Context.empty());
+
+        var sqsListeners = new SqsListeners(Set.of(adaptiveListener), sqsClient, sqsMessageChecker, reactiveLoggingContextCreator, settings);
+        try {
+            runAsync(sqsListeners::start);
+            Thread.sleep(500);
+            assertThat(sqsListeners.getActivePollers("the-queue-name")).contains(3);
+            receivedMessages.set(0);
+            Thread.sleep(500);
+            assertThat(sqsListeners.getActivePollers("the-queue-name")).contains(1);
+        } finally {
+            sqsListeners.stop();
+        }
+
+    }
+
+    @Test
+    @DisplayName("should wait for the messages being handled when stopping")
+    void drain() throws Exception {
+
+        var getQueueUrlRequest = GetQueueUrlRequest.builder()
+                .queueName("the-queue-name")
+                .build();
+        var getQueueUrlResponse = GetQueueUrlResponse.builder()
+                .queueUrl("the-queue-url")
+                .build();
+        given(sqsClient.getQueueUrl(getQueueUrlRequest)).willReturn(completedFuture(getQueueUrlResponse));
+
+        var startedChecks = new AtomicInteger(0);
+        var completedChecks = new AtomicInteger(0);
+        var fakeMessageChecking = Mono
+                .fromRunnable(startedChecks::incrementAndGet)
+                .then(Mono.delay(Duration.of(300, MILLIS)))
+                .then(Mono.fromSupplier(completedChecks::incrementAndGet));
+        given(sqsMessageChecker.checkForMessages("the-queue-url", listener)).willReturn(fakeMessageChecking);
+        given(reactiveLoggingContextCreator.create()).willReturn(Context.empty());
+
+        var sqsListeners = new SqsListeners(Set.of(listener), sqsClient, sqsMessageChecker, reactiveLoggingContextCreator, settings);
+        runAsync(sqsListeners::start);
+        Thread.sleep(100);
+        sqsListeners.stop();
+
+        verify(sqsMessageChecker).stopReceiving();
+        assertThat(completedChecks.get()).isEqualTo(startedChecks.get()).isPositive();
+
+    }
+
+    @Test
+    @DisplayName("should poll again when restarted after being stopped")
+    void restart() throws Exception {
+
+        var getQueueUrlRequest = GetQueueUrlRequest.builder()
+                .queueName("the-queue-name")
+                .build();
+        var getQueueUrlResponse = GetQueueUrlResponse.builder()
+                .queueUrl("the-queue-url")
+                .build();
+        given(sqsClient.getQueueUrl(getQueueUrlRequest)).willReturn(completedFuture(getQueueUrlResponse));
+
+        var callCount = new AtomicInteger(0);
+        given(sqsMessageChecker.checkForMessages("the-queue-url", listener)).willReturn(waitThenIncrement(callCount).thenReturn(0));
+        given(reactiveLoggingContextCreator.create()).willReturn(Context.empty());
+
+        var sqsListeners = new SqsListeners(Set.of(listener), sqsClient, sqsMessageChecker, reactiveLoggingContextCreator, settings);
+        runAsync(sqsListeners::start).get(1, SECONDS);
+        Thread.sleep(100);
+        sqsListeners.stop();
+        var callCountWhenStopped = callCount.get();
+
+        runAsync(sqsListeners::start).get(1, SECONDS);
+        Thread.sleep(100);
+        sqsListeners.stop();
+
+        assertThat(callCount.get()).isGreaterThan(callCountWhenStopped);
+        assertThat(callCountWhenStopped).isPositive();
+        verify(sqsMessageChecker, times(2)).startReceiving();
+        verify(sqsMessageChecker, times(2)).stopReceiving();
+
+    }
+
+    @Test
+    @DisplayName("should expose the active pollers of the current start when restarted")
+    void activePollersGaugeRestart() throws Exception {
+
+        var getQueueUrlRequest = GetQueueUrlRequest.builder()
+                .queueName("the-queue-name")
+                .build();
+        var getQueueUrlResponse = GetQueueUrlResponse.builder()
+                .queueUrl("the-queue-url")
+                .build();
+        given(sqsClient.getQueueUrl(getQueueUrlRequest)).willReturn(completedFuture(getQueueUrlResponse));
+
+        var callCount = new AtomicInteger(0);
+        given(sqsMessageChecker.checkForMessages("the-queue-url", listener)).willReturn(waitThenIncrement(callCount).thenReturn(0));
+        given(reactiveLoggingContextCreator.create()).willReturn(Context.empty());
+
+        var registry = new SimpleMeterRegistry();
+        var measuredSettings = settings.toBuilder().metrics(new MicrometerSqsMetrics(registry)).build();
+        var sqsListeners = new SqsListeners(Set.of(listener), sqsClient, sqsMessageChecker, reactiveLoggingContextCreator, measuredSettings);
+        runAsync(sqsListeners::start).get(1, SECONDS);
+        Thread.sleep(100);
+        sqsListeners.stop();
+        runAsync(sqsListeners::start).get(1, SECONDS);
+        Thread.sleep(100);
+
+        try {
+            var activePollers = registry.get("sqs_active_pollers").tag("queue_name", "the-queue-url").gauge().value();
+            assertThat(activePollers).isPositive().isEqualTo(sqsListeners.getActivePollers("the-queue-name").orElseThrow().doubleValue());
+        } finally {
+            sqsListeners.stop();
+        }
+
+    }
+
+    @Test
+    @DisplayName("should refuse listeners without any poller")
+    void noPoller() {
+        var sqsListeners = Set.<SqsListener<?>>of(listener);
+        var thrownException = assertThrows(
+                IllegalArgumentException.class,
+                () -> new SqsListeners(sqsListeners, sqsClient, sqsMessageChecker, reactiveLoggingContextCreator, settings.toBuilder().defaultPollers(0).build())
+        );
+        assertThat(thrownException.getMessage()).isEqualTo("At least one poller is required for queue the-queue-name, got 0");
+    }
+
     private void startAndStop() {
-        var sqsListeners = new SqsListeners(Set.of(listener), sqsClient, sqsMessageChecker, reactiveLoggingContextCreator);
+        startAndStop(listener);
+    }
+
+    @SneakyThrows
+    private void startAndStop(SqsListener<?> listener) {
+        var sqsListeners = new SqsListeners(Set.of(listener), sqsClient, sqsMessageChecker, reactiveLoggingContextCreator, settings);
         runAsync(sqsListeners::start);
         Thread.sleep(2500);
         sqsListeners.stop();
     }
 
-    private static Mono<Void> waitThenIncrement(AtomicInteger counter) {
+    private static Mono<Integer> waitThenIncrement(AtomicInteger counter) {
         var waitTime = Duration.of(1, MILLIS);
         return Mono.delay(waitTime).then(Mono.fromRunnable(counter::incrementAndGet));
     }
@@ -0,0 +1,150 @@
+package com.qudini.reactive.sqs.message;
+
+import com.qudini.reactive.sqs.metrics.MicrometerSqsMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.SqsException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AcknowledgementAggregator")
+class AcknowledgementAggregatorTest {
+
+    @Mock
+    private SqsAsyncClient sqsClient;
+
+    @Captor
+    private ArgumentCaptor<DeleteMessageBatchRequest> deleteMessageBatchRequestArgumentCaptor;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private AcknowledgementAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        aggregator = new AcknowledgementAggregator(sqsClient, "the-queue-url", Duration.ofMillis(50), new MicrometerSqsMetrics(registry));
+    }
+
+    @AfterEach
+    void tearDown() {
+        aggregator.dispose();
+    }
+
+    @Test
+    @DisplayName("should flush a batch as soon as it is full")
+    void sizeFlush() {
+        given(sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).willAnswer(invocation -> succeedAll(invocation.getArgument(0)));
+
+        Flux
+                .range(0, 15)
+                .flatMap(index -> aggregator.acknowledge("receipt-handle-" + index))
+                .blockLast();
+
+        verify(sqsClient, times(2)).deleteMessageBatch(deleteMessageBatchRequestArgumentCaptor.capture());
+        assertThat(deleteMessageBatchRequestArgumentCaptor.getAllValues())
+                .extracting(request -> request.entries().size())
+                .containsExactlyInAnyOrder(10, 5);
+        assertThat(aggregator.getSizeFlushes()).isEqualTo(1);
+        assertThat(aggregator.getDelayFlushes()).isEqualTo(1);
+        assertThat(aggregator.getAcknowledgedMessages()).isEqualTo(15);
+        assertThat(registry.get("sqs_acknowledgement_batch_size").tag("trigger", "size").summary().totalAmount()).isEqualTo(10);
+        assertThat(registry.get("sqs_acknowledgement_batch_size").tag("trigger", "delay").summary().totalAmount()).isEqualTo(5);
+        assertThat(registry.get("sqs_acknowledgement_duration").tag("status", "success").timer().count()).isEqualTo(15);
+    }
+
+    @Test
+    @DisplayName("should flush a partial batch once the max delay elapsed")
+    void delayFlush() {
+        given(sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).willAnswer(invocation -> succeedAll(invocation.getArgument(0)));
+
+        aggregator.acknowledge("the-receipt-handle").block(Duration.ofSeconds(1));
+
+        verify(sqsClient).deleteMessageBatch(deleteMessageBatchRequestArgumentCaptor.capture());
+        var request = deleteMessageBatchRequestArgumentCaptor.getValue();
+        assertThat(request.queueUrl()).isEqualTo("the-queue-url");
+        assertThat(request.entries()).extracting(DeleteMessageBatchRequestEntry::receiptHandle).containsExactly("the-receipt-handle");
+        assertThat(aggregator.getDelayFlushes()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should report per-entry failures to the corresponding acknowledgement only")
+    void entryFailure() {
+        var response = DeleteMessageBatchResponse
+                .builder()
+                .successful(DeleteMessageBatchResultEntry.builder().id("0").build())
+                .failed(BatchResultErrorEntry.builder().id("1").code("ReceiptHandleIsInvalid").message("fake deletion error").build())
+                .build();
+        given(sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).willReturn(completedFuture(response));
+
+        var first = aggregator.acknowledge("the-first-receipt-handle").toFuture();
+        var second = aggregator.acknowledge("the-second-receipt-handle").toFuture();
+
+        first.join();
+        var thrownException = assertThrows(Exception.class, second::join);
+        assertThat(thrownException).hasCauseInstanceOf(SqsException.class);
+        assertThat(((SqsException) thrownException.getCause()).awsErrorDetails().errorCode()).isEqualTo("ReceiptHandleIsInvalid");
+        assertThat(aggregator.getAcknowledgedMessages()).isEqualTo(1);
+        assertThat(aggregator.getFailedMessages()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should fail all the acknowledgements of a batch if the call fails")
+    void batchFailure() {
+        given(sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).willReturn(CompletableFuture.failedFuture(new IllegalStateException("fake batch error")));
+
+        var thrownException = assertThrows(
+                IllegalStateException.class,
+                () -> aggregator.acknowledge("the-receipt-handle").block(Duration.ofSeconds(1))
+        );
+        assertThat(thrownException.getMessage()).isEqualTo("fake batch error");
+        assertThat(aggregator.getFailedMessages()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should refuse acknowledgements once closed")
+    void closed() {
+        aggregator.drain().block();
+
+        var thrownException = assertThrows(IllegalStateException.class, () -> aggregator.acknowledge("the-receipt-handle").block(Duration.ofSeconds(1)));
+
+        assertThat(thrownException.getMessage()).isEqualTo("The acknowledgements of queue the-queue-url are closed");
+        verify(sqsClient, never()).deleteMessageBatch(any(DeleteMessageBatchRequest.class));
+    }
+
+    private static CompletableFuture<DeleteMessageBatchResponse> succeedAll(DeleteMessageBatchRequest request) {
+        List<DeleteMessageBatchResultEntry> successful = IntStream
+                .range(0, request.entries().size())
+                .mapToObj(index -> DeleteMessageBatchResultEntry.builder().id(String.valueOf(index)).build())
+                .toList();
+        return completedFuture(DeleteMessageBatchResponse.builder().successful(successful).build());
+    }
+
+}
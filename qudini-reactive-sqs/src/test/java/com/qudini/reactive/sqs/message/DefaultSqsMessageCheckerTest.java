@@ -1,27 +1,61 @@
 package com.qudini.reactive.sqs.message;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qudini.reactive.logging.Log;
+import com.qudini.reactive.logging.ReactiveLoggingContextCreator;
+import com.qudini.reactive.sqs.BatchSqsListener;
+import com.qudini.reactive.sqs.DeadLetterHandler;
 import com.qudini.reactive.sqs.SqsListener;
+import com.qudini.reactive.sqs.dedup.InMemoryDeduplicationStore;
+import com.qudini.reactive.sqs.metrics.MicrometerSqsMetrics;
+import com.qudini.reactive.sqs.payload.ClaimCheck;
+import com.qudini.reactive.sqs.payload.InMemoryPayloadStore;
+import com.qudini.reactive.sqs.payload.ThreadRecordingPayloadStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import software.amazon.awssdk.services.sqs.SqsAsyncClient;
-import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest;
-import software.amazon.awssdk.services.sqs.model.DeleteMessageResponse;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResultEntry;
 import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
 import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
 import software.amazon.awssdk.services.sqs.model.ReceiveMessageResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.Collections.synchronizedList;
 import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -48,6 +82,75 @@ class DefaultSqsMessageCheckerTest {
 
     };
 
+    private final SqsListener<String> limitedListener = new SqsListener<>() {
+
+        @Override
+        public String getQueueName() {
+            return "the-queue-name";
+        }
+
+        @Override
+        public Optional<Integer> getMaxInFlight() {
+            return Optional.of(3);
+        }
+
+        @Override
+        public Class<String> getMessageType() {
+            return String.class;
+        }
+
+        @Override
+        public Mono<Void> handleMessage(String message, Acknowledger acknowledger) {
+            return Mono.empty();
+        }
+
+    };
+
+    private final BatchSqsListener<String> partiallyAcknowledgingBatchListener = new BatchSqsListener<>() {
+
+        @Override
+        public String getQueueName() {
+            return "the-queue-name";
+        }
+
+        @Override
+        public Class<String> getMessageType() {
+            return String.class;
+        }
+
+        @Override
+        public Mono<Void> handleMessages(List<String> messages, BatchAcknowledger acknowledger) {
+            assertThat(messages).containsExactly("the first parsed message", "the second parsed message", "the third parsed message");
+            return acknowledger.acknowledge(List.of(0, 2));
+        }
+
+    };
+
+    private final List<String> fifoEvents = synchronizedList(new ArrayList<>());
+
+    private final SqsListener<String> fifoListener = new SqsListener<>() {
+
+        @Override
+        public String getQueueName() {
+            return "the-queue-name.fifo";
+        }
+
+        @Override
+        public Class<String> getMessageType() {
+            return String.class;
+        }
+
+        @Override
+        public Mono<Void> handleMessage(String message, Acknowledger acknowledger) {
+            return Mono
+                    .fromRunnable(() -> fifoEvents.add("start " + message))
+                    .then(Mono.delay(Duration.ofMillis(100)))
+                    .doOnNext(tick -> fifoEvents.add("end " + message))
+                    .then();
+        }
+
+    };
+
     private final SqsListener<String> failingListener = new SqsListener<>() {
 
         @Override
@@ -70,27 +173,46 @@ class DefaultSqsMessageCheckerTest {
     @Mock
     private SqsAsyncClient sqsClient;
 
-    @Mock
-    private ObjectMapper objectMapper;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ReactiveLoggingContextCreator reactiveLoggingContextCreator = new Log(() -> "a-generated-correlation-id");
+
+    private SqsMessageCheckerSettings settings;
 
-    @InjectMocks
     private DefaultSqsMessageChecker sqsMessageChecker;
 
     @Captor
-    private ArgumentCaptor<DeleteMessageRequest> deleteMessageRequestArgumentCaptor;
+    private ArgumentCaptor<DeleteMessageBatchRequest> deleteMessageBatchRequestArgumentCaptor;
+
+    @Captor
+    private ArgumentCaptor<ChangeMessageVisibilityBatchRequest> changeMessageVisibilityBatchRequestArgumentCaptor;
+
+    @BeforeEach
+    void setUp() {
+        settings = SqsMessageCheckerSettings.builder().reactiveLoggingContextCreator(reactiveLoggingContextCreator).build();
+        sqsMessageChecker = new DefaultSqsMessageChecker(sqsClient, objectMapper, settings);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sqsMessageChecker.close();
+    }
 
     @Test
-    @DisplayName("should let the listeners acknowledge the messages")
+    @DisplayName("should let the listeners acknowledge the messages in batches")
     void acknowledgment() throws Exception {
 
         var firstMessage = Message.builder()
-                .body("the first message")
+                .body("\"the first message\"")
+                .receiptHandle("the first receipt handle")
                 .build();
         var secondMessage = Message.builder()
-                .body("the second message")
+                .body("\"the second message\"")
+                .receiptHandle("the second receipt handle")
                 .build();
         var receiveMessageRequest = ReceiveMessageRequest.builder()
                 .queueUrl("the-queue-url")
+                .messageAttributeNames("correlation_id")
                 .maxNumberOfMessages(10)
                 .visibilityTimeout(5)
                 .waitTimeSeconds(20)
@@ -100,62 +222,664 @@ class DefaultSqsMessageCheckerTest {
                 .build();
         given(sqsClient.receiveMessage(receiveMessageRequest)).willReturn(completedFuture(receiveMessageResponse));
 
-        given(objectMapper.readValue("the first message", String.class)).willReturn("the first parsed message");
-        given(objectMapper.readValue("the second message", String.class)).willReturn("the second parsed message");
+        var deleteMessageBatchResponse = DeleteMessageBatchResponse.builder()
+                .successful(
+                        DeleteMessageBatchResultEntry.builder().id("0").build(),
+                        DeleteMessageBatchResultEntry.builder().id("1").build()
+                )
+                .build();
+        given(sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).willReturn(completedFuture(deleteMessageBatchResponse));
+
+        var receivedMessages = sqsMessageChecker.checkForMessages("the-queue-url", acknowledgingListener).block();
+        assertThat(receivedMessages).isEqualTo(2);
+
+        verify(sqsClient).deleteMessageBatch(deleteMessageBatchRequestArgumentCaptor.capture());
+        var capturedDeleteMessageBatchRequest = deleteMessageBatchRequestArgumentCaptor.getValue();
+        assertThat(capturedDeleteMessageBatchRequest.queueUrl()).isEqualTo("the-queue-url");
+        assertThat(capturedDeleteMessageBatchRequest.entries())
+                .extracting(DeleteMessageBatchRequestEntry::receiptHandle)
+                .containsExactlyInAnyOrder(
+                        "the first receipt handle",
+                        "the second receipt handle"
+                );
+
+    }
 
-        var deleteFirstMessageRequest = DeleteMessageRequest.builder()
+    @Test
+    @DisplayName("should not swallow any error")
+    void error() throws Exception {
+
+        var message = Message.builder()
+                .body("\"the message\"")
+                .receiptHandle("the receipt handle")
+                .build();
+        var receiveMessageRequest = ReceiveMessageRequest.builder()
                 .queueUrl("the-queue-url")
-                .receiptHandle(firstMessage.receiptHandle())
+                .messageAttributeNames("correlation_id")
+                .maxNumberOfMessages(10)
+                .visibilityTimeout(5)
+                .waitTimeSeconds(20)
                 .build();
-        var deleteFirstMessageResponse = DeleteMessageResponse.builder()
+        var receiveMessageResponse = ReceiveMessageResponse.builder()
+                .messages(message)
                 .build();
-        given(sqsClient.deleteMessage(deleteFirstMessageRequest)).willReturn(completedFuture(deleteFirstMessageResponse));
+        given(sqsClient.receiveMessage(receiveMessageRequest)).willReturn(completedFuture(receiveMessageResponse));
 
-        var deleteSecondMessageRequest = DeleteMessageRequest.builder()
+        var thrownException = assertThrows(
+                IllegalStateException.class,
+                () -> sqsMessageChecker.checkForMessages("the-queue-url", failingListener).block()
+        );
+        assertThat(thrownException.getMessage()).isEqualTo("fake message handling error");
+
+    }
+
+    @Test
+    @DisplayName("should not receive more messages than the in-flight budget allows")
+    void maxInFlight() throws Exception {
+
+        var limitedReceiveMessageRequest = ReceiveMessageRequest.builder()
                 .queueUrl("the-queue-url")
-                .receiptHandle(secondMessage.receiptHandle())
+                .messageAttributeNames("correlation_id")
+                .maxNumberOfMessages(3)
+                .visibilityTimeout(5)
+                .waitTimeSeconds(20)
                 .build();
-        var deleteSecondMessageResponse = DeleteMessageResponse.builder()
+        var receiveMessageResponse = ReceiveMessageResponse.builder()
+                .messages(Message.builder().body("\"the message\"").receiptHandle("the receipt handle").build())
                 .build();
-        given(sqsClient.deleteMessage(deleteSecondMessageRequest)).willReturn(completedFuture(deleteSecondMessageResponse));
+        given(sqsClient.receiveMessage(limitedReceiveMessageRequest)).willReturn(completedFuture(receiveMessageResponse));
 
-        sqsMessageChecker.checkForMessages("the-queue-url", acknowledgingListener).block();
+        sqsMessageChecker.checkForMessages("the-queue-url", limitedListener).block();
 
-        verify(sqsClient, times(2)).deleteMessage(deleteMessageRequestArgumentCaptor.capture());
-        var allCapturedDeleteMessageRequests = deleteMessageRequestArgumentCaptor.getAllValues();
-        assertThat(allCapturedDeleteMessageRequests).containsExactlyInAnyOrder(
-                deleteFirstMessageRequest,
-                deleteSecondMessageRequest
+        var inFlightLimiter = sqsMessageChecker.getInFlightLimiter("the-queue-url", limitedListener);
+        assertThat(inFlightLimiter.getMaxInFlight()).isEqualTo(3);
+        assertThat(inFlightLimiter.getInFlight()).isZero();
+
+    }
+
+    @Test
+    @DisplayName("should let the batch listeners handle and partially acknowledge whole receive batches")
+    void batch() throws Exception {
+
+        var messages = List.of(
+                Message.builder().body("\"the first parsed message\"").receiptHandle("the first receipt handle").build(),
+                Message.builder().body("\"the second parsed message\"").receiptHandle("the second receipt handle").build(),
+                Message.builder().body("\"the third parsed message\"").receiptHandle("the third receipt handle").build()
         );
+        var receiveMessageRequest = ReceiveMessageRequest.builder()
+                .queueUrl("the-queue-url")
+                .messageAttributeNames("correlation_id")
+                .maxNumberOfMessages(10)
+                .visibilityTimeout(5)
+                .waitTimeSeconds(20)
+                .build();
+        var receiveMessageResponse = ReceiveMessageResponse.builder()
+                .messages(messages)
+                .build();
+        given(sqsClient.receiveMessage(receiveMessageRequest)).willReturn(completedFuture(receiveMessageResponse));
+
+        var deleteMessageBatchResponse = DeleteMessageBatchResponse.builder()
+                .successful(
+                        DeleteMessageBatchResultEntry.builder().id("0").build(),
+                        DeleteMessageBatchResultEntry.builder().id("1").build()
+                )
+                .build();
+        given(sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).willReturn(completedFuture(deleteMessageBatchResponse));
+
+        sqsMessageChecker.checkForMessages("the-queue-url", partiallyAcknowledgingBatchListener).block();
+
+        verify(sqsClient).deleteMessageBatch(deleteMessageBatchRequestArgumentCaptor.capture());
+        assertThat(deleteMessageBatchRequestArgumentCaptor.getValue().entries())
+                .extracting(DeleteMessageBatchRequestEntry::receiptHandle)
+                .containsExactlyInAnyOrder(
+                        "the first receipt handle",
+                        "the third receipt handle"
+                );
 
     }
 
     @Test
-    @DisplayName("should not swallow any error")
-    void error() throws Exception {
+    @DisplayName("should handle the messages of a same FIFO group in order, and the different groups in parallel")
+    void fifo() throws Exception {
 
-        var message = Message.builder()
-                .body("the message")
+        var messages = List.of(
+                buildGroupedMessage("the first message of A", "A"),
+                buildGroupedMessage("the message of B", "B"),
+                buildGroupedMessage("the second message of A", "A")
+        );
+        var receiveMessageRequest = ReceiveMessageRequest.builder()
+                .queueUrl("the-queue-url")
+                .messageAttributeNames("correlation_id")
+                .maxNumberOfMessages(10)
+                .visibilityTimeout(5)
+                .waitTimeSeconds(20)
+                .messageSystemAttributeNames(MessageSystemAttributeName.MESSAGE_GROUP_ID)
+                .build();
+        var receiveMessageResponse = ReceiveMessageResponse.builder()
+                .messages(messages)
+                .build();
+        given(sqsClient.receiveMessage(receiveMessageRequest)).willReturn(completedFuture(receiveMessageResponse));
+
+        sqsMessageChecker.checkForMessages("the-queue-url", fifoListener).block();
+
+        assertThat(fifoEvents).containsExactlyInAnyOrder(
+                "start the first message of A",
+                "end the first message of A",
+                "start the second message of A",
+                "end the second message of A",
+                "start the message of B",
+                "end the message of B"
+        );
+        assertThat(fifoEvents.indexOf("start the second message of A")).isGreaterThan(fifoEvents.indexOf("end the first message of A"));
+        assertThat(fifoEvents.indexOf("start the message of B")).isLessThan(fifoEvents.indexOf("end the first message of A"));
+        assertThat(sqsMessageChecker.getMessageGroupLimiter("the-queue-url", fifoListener).getInFlight()).isZero();
+
+    }
+
+    @Test
+    @DisplayName("should stop a FIFO group when one of its messages is left for redelivery, and reset the visibility of the rest of the group")
+    void fifoLeftForRedelivery() throws Exception {
+
+        var messages = List.of(
+                Message.builder()
+                        .body("not JSON")
+                        .receiptHandle("the receipt handle of the first message of A")
+                        .attributes(Map.of(MessageSystemAttributeName.MESSAGE_GROUP_ID, "A"))
+                        .build(),
+                buildGroupedMessage("the message of B", "B"),
+                buildGroupedMessage("the second message of A", "A"),
+                buildGroupedMessage("the third message of A", "A")
+        );
+        var receiveMessageRequest = ReceiveMessageRequest.builder()
+                .queueUrl("the-queue-url")
+                .messageAttributeNames("correlation_id")
+                .maxNumberOfMessages(10)
+                .visibilityTimeout(5)
+                .waitTimeSeconds(20)
+                .messageSystemAttributeNames(MessageSystemAttributeName.MESSAGE_GROUP_ID)
+                .build();
+        var receiveMessageResponse = ReceiveMessageResponse.builder()
+                .messages(messages)
+                .build();
+        given(sqsClient.receiveMessage(receiveMessageRequest)).willReturn(completedFuture(receiveMessageResponse));
+        given(sqsClient.changeMessageVisibilityBatch(any(ChangeMessageVisibilityBatchRequest.class))).willReturn(completedFuture(ChangeMessageVisibilityBatchResponse.builder().build()));
+
+        sqsMessageChecker.checkForMessages("the-queue-url", fifoListener).block();
+
+        assertThat(fifoEvents).containsExactly("start the message of B", "end the message of B");
+        verify(sqsClient).changeMessageVisibilityBatch(changeMessageVisibilityBatchRequestArgumentCaptor.capture());
+        assertThat(changeMessageVisibilityBatchRequestArgumentCaptor.getValue().entries())
+                .extracting(ChangeMessageVisibilityBatchRequestEntry::receiptHandle, ChangeMessageVisibilityBatchRequestEntry::visibilityTimeout)
+                .containsExactly(
+                        tuple("the receipt handle of the second message of A", 0),
+                        tuple("the receipt handle of the third message of A", 0)
+                );
+        verify(sqsClient, never()).deleteMessageBatch(any(DeleteMessageBatchRequest.class));
+        assertThat(sqsMessageChecker.getMessageGroupLimiter("the-queue-url", fifoListener).getInFlight()).isZero();
+
+    }
+
+    @Test
+    @DisplayName("should deserialise the messages on the configured scheduler")
+    void deserialisationScheduler() {
+
+        var receiveMessageRequest = ReceiveMessageRequest.builder()
+                .queueUrl("the-queue-url")
+                .messageAttributeNames("correlation_id")
+                .maxNumberOfMessages(10)
+                .visibilityTimeout(5)
+                .waitTimeSeconds(20)
+                .build();
+        var receiveMessageResponse = ReceiveMessageResponse.builder()
+                .messages(Message.builder().body("\"the message\"").receiptHandle("the receipt handle").build())
+                .build();
+        given(sqsClient.receiveMessage(receiveMessageRequest)).willReturn(completedFuture(receiveMessageResponse));
+
+        var handlingThread = new AtomicReference<String>();
+        var threadRecordingListener = new SqsListener<String>() {
+
+            @Override
+            public String getQueueName() {
+                return "the-queue-name";
+            }
+
+            @Override
+            public Class<String> getMessageType() {
+                return String.class;
+            }
+
+            @Override
+            public Mono<Void> handleMessage(String message, Acknowledger acknowledger) {
+                handlingThread.set(Thread.currentThread().getName());
+                return Mono.empty();
+            }
+
+        };
+
+        var deserialisationScheduler = Schedulers.newSingle("the-deserialisation-scheduler");
+        var scheduledSqsMessageChecker = new DefaultSqsMessageChecker(sqsClient, objectMapper, settings.toBuilder().deserialisationScheduler(deserialisationScheduler).build());
+        try {
+            scheduledSqsMessageChecker.checkForMessages("the-queue-url", threadRecordingListener).block();
+        } finally {
+            scheduledSqsMessageChecker.close();
+            deserialisationScheduler.dispose();
+        }
+
+        assertThat(handlingThread.get()).startsWith("the-deserialisation-scheduler");
+
+    }
+
+    @Test
+    @DisplayName("should isolate the messages that can't be deserialised")
+    void undeserialisable() {
+
+        var receiveMessageRequest = ReceiveMessageRequest.builder()
+                .queueUrl("the-queue-url")
+                .messageAttributeNames("correlation_id")
+                .maxNumberOfMessages(10)
+                .visibilityTimeout(5)
+                .waitTimeSeconds(20)
+                .build();
+        var receiveMessageResponse = ReceiveMessageResponse.builder()
+                .messages(
+                        Message.builder().body("{ not a string").receiptHandle("the poisonous receipt handle").build(),
+                        Message.builder().body("\"the message\"").receiptHandle("the receipt handle").build()
+                )
+                .build();
+        given(sqsClient.receiveMessage(receiveMessageRequest)).willReturn(completedFuture(receiveMessageResponse));
+
+        var deleteMessageBatchResponse = DeleteMessageBatchResponse.builder()
+                .successful(DeleteMessageBatchResultEntry.builder().id("0").build())
                 .build();
+        given(sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).willReturn(completedFuture(deleteMessageBatchResponse));
+
+        var receivedMessages = sqsMessageChecker.checkForMessages("the-queue-url", acknowledgingListener).block();
+        assertThat(receivedMessages).isEqualTo(2);
+
+        verify(sqsClient).deleteMessageBatch(deleteMessageBatchRequestArgumentCaptor.capture());
+        assertThat(deleteMessageBatchRequestArgumentCaptor.getValue().entries())
+                .extracting(DeleteMessageBatchRequestEntry::receiptHandle)
+                .containsExactly("the receipt handle");
+
+    }
+
+    @Test
+    @DisplayName("should dead-letter the messages received more times than the max receive count")
+    void maxReceiveCount() {
+
         var receiveMessageRequest = ReceiveMessageRequest.builder()
                 .queueUrl("the-queue-url")
+                .messageAttributeNames("correlation_id")
                 .maxNumberOfMessages(10)
                 .visibilityTimeout(5)
                 .waitTimeSeconds(20)
+                .messageSystemAttributeNames(MessageSystemAttributeName.APPROXIMATE_RECEIVE_COUNT)
+                .build();
+        var message = Message.builder()
+                .messageId("the message id")
+                .body("\"the message\"")
+                .receiptHandle("the receipt handle")
+                .attributes(Map.of(MessageSystemAttributeName.APPROXIMATE_RECEIVE_COUNT, "4"))
                 .build();
         var receiveMessageResponse = ReceiveMessageResponse.builder()
                 .messages(message)
                 .build();
         given(sqsClient.receiveMessage(receiveMessageRequest)).willReturn(completedFuture(receiveMessageResponse));
 
-        given(objectMapper.readValue("the message", String.class)).willReturn("the parsed message");
+        var deleteMessageBatchResponse = DeleteMessageBatchResponse.builder()
+                .successful(DeleteMessageBatchResultEntry.builder().id("0").build())
+                .build();
+        given(sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).willReturn(completedFuture(deleteMessageBatchResponse));
 
-        var thrownException = assertThrows(
-                IllegalStateException.class,
-                () -> sqsMessageChecker.checkForMessages("the-queue-url", failingListener).block()
+        var deadLetters = new ArrayList<Message>();
+        DeadLetterHandler deadLetterHandler = (queueUrl, deadLetter, error) -> Mono.fromRunnable(() -> deadLetters.add(deadLetter));
+        var deadLetteringSqsMessageChecker = new DefaultSqsMessageChecker(sqsClient, objectMapper, settings.toBuilder().defaultMaxReceiveCount(3).deadLetterHandler(Optional.of(deadLetterHandler)).build());
+        try {
+            deadLetteringSqsMessageChecker.checkForMessages("the-queue-url", failingListener).block();
+        } finally {
+            deadLetteringSqsMessageChecker.close();
+        }
+
+        assertThat(deadLetters).containsExactly(message);
+        verify(sqsClient).deleteMessageBatch(deleteMessageBatchRequestArgumentCaptor.capture());
+        assertThat(deleteMessageBatchRequestArgumentCaptor.getValue().entries())
+                .extracting(DeleteMessageBatchRequestEntry::receiptHandle)
+                .containsExactly("the receipt handle");
+
+    }
+
+    @Test
+    @DisplayName("should record the metrics of the queue")
+    void metrics() {
+
+        var receiveMessageRequest = ReceiveMessageRequest.builder()
+                .queueUrl("https://sqs.eu-west-1.amazonaws.com/123456789012/the-queue-name")
+                .messageAttributeNames("correlation_id")
+                .maxNumberOfMessages(10)
+                .visibilityTimeout(5)
+                .waitTimeSeconds(20)
+                .messageSystemAttributeNames(MessageSystemAttributeName.SENT_TIMESTAMP)
+                .build();
+        var message = Message.builder()
+                .body("\"the message\"")
+                .receiptHandle("the receipt handle")
+                .attributes(Map.of(MessageSystemAttributeName.SENT_TIMESTAMP, String.valueOf(System.currentTimeMillis() - 1000)))
+                .build();
+        var receiveMessageResponse = ReceiveMessageResponse.builder()
+                .messages(message)
+                .build();
+        given(sqsClient.receiveMessage(receiveMessageRequest)).willReturn(completedFuture(receiveMessageResponse));
+
+        var deleteMessageBatchResponse = DeleteMessageBatchResponse.builder()
+                .successful(DeleteMessageBatchResultEntry.builder().id("0").build())
+                .build();
+        given(sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).willReturn(completedFuture(deleteMessageBatchResponse));
+
+        var registry = new SimpleMeterRegistry();
+        var measuredSqsMessageChecker = new DefaultSqsMessageChecker(sqsClient, objectMapper, settings.toBuilder().metrics(new MicrometerSqsMetrics(registry)).build());
+        try {
+            measuredSqsMessageChecker.checkForMessages(receiveMessageRequest.queueUrl(), acknowledgingListener).block();
+        } finally {
+            measuredSqsMessageChecker.close();
+        }
+
+        assertThat(registry.get("sqs_receive_duration").tag("queue_name", "the-queue-name").tag("status", "success").timer().count()).isEqualTo(1);
+        assertThat(registry.get("sqs_received_messages").tag("queue_name", "the-queue-name").summary().totalAmount()).isEqualTo(1);
+        assertThat(registry.get("sqs_message_age").tag("queue_name", "the-queue-name").timer().totalTime(SECONDS)).isGreaterThanOrEqualTo(1);
+        assertThat(registry.get("sqs_handling_duration").tag("queue_name", "the-queue-name").tag("status", "success").timer().count()).isEqualTo(1);
+        assertThat(registry.get("sqs_acknowledgement_duration").tag("queue_name", "the-queue-name").tag("status", "success").timer().count()).isEqualTo(1);
+        assertThat(registry.get("sqs_in_flight_messages").tag("queue_name", "the-queue-name").gauge().value()).isZero();
+
+    }
+
+    @Test
+    @DisplayName("should make the messages not handled yet visible again once receiving is stopped, until started again")
+    void stopReceiving() throws Exception {
+
+        var stoppingListener = new SqsListener<String>() {
+
+            @Override
+            public String getQueueName() {
+                return "the-queue-name.fifo";
+            }
+
+            @Override
+            public Class<String> getMessageType() {
+                return String.class;
+            }
+
+            @Override
+            public Mono<Void> handleMessage(String message, Acknowledger acknowledger) {
+                return Mono.fromRunnable(() -> {
+                    fifoEvents.add(message);
+                    sqsMessageChecker.stopReceiving();
+                });
+            }
+
+        };
+
+        var messages = List.of(
+                buildGroupedMessage("the first message", "A"),
+                buildGroupedMessage("the second message", "A")
         );
-        assertThat(thrownException.getMessage()).isEqualTo("fake message handling error");
+        var receiveMessageRequest = ReceiveMessageRequest.builder()
+                .queueUrl("the-queue-url")
+                .messageAttributeNames("correlation_id")
+                .maxNumberOfMessages(10)
+                .visibilityTimeout(5)
+                .waitTimeSeconds(20)
+                .messageSystemAttributeNames(MessageSystemAttributeName.MESSAGE_GROUP_ID)
+                .build();
+        var receiveMessageResponse = ReceiveMessageResponse.builder()
+                .messages(messages)
+                .build();
+        given(sqsClient.receiveMessage(receiveMessageRequest)).willReturn(completedFuture(receiveMessageResponse));
+        given(sqsClient.changeMessageVisibilityBatch(any(ChangeMessageVisibilityBatchRequest.class))).willReturn(completedFuture(ChangeMessageVisibilityBatchResponse.builder().build()));
+
+        sqsMessageChecker.checkForMessages("the-queue-url", stoppingListener).block();
+
+        assertThat(fifoEvents).containsExactly("the first message");
+        verify(sqsClient).changeMessageVisibilityBatch(changeMessageVisibilityBatchRequestArgumentCaptor.capture());
+        assertThat(changeMessageVisibilityBatchRequestArgumentCaptor.getValue().entries())
+                .extracting(ChangeMessageVisibilityBatchRequestEntry::receiptHandle, ChangeMessageVisibilityBatchRequestEntry::visibilityTimeout)
+                .containsExactly(tuple("the receipt handle of the second message", 0));
+        assertThat(sqsMessageChecker.checkForMessages("the-queue-url", stoppingListener).block()).isZero();
+        verify(sqsClient, times(1)).receiveMessage(any(ReceiveMessageRequest.class));
+
+        sqsMessageChecker.startReceiving();
+        assertThat(sqsMessageChecker.checkForMessages("the-queue-url", stoppingListener).block()).isEqualTo(2);
+        verify(sqsClient, times(2)).receiveMessage(any(ReceiveMessageRequest.class));
+
+    }
+
+    @Test
+    @DisplayName("should handle each message with the correlation id of its sender, or a generated one")
+    void correlationId() {
+
+        List<String> correlationIds = new CopyOnWriteArrayList<>();
+        var tracingListener = new SqsListener<String>() {
+
+            @Override
+            public String getQueueName() {
+                return "the-queue-name";
+            }
+
+            @Override
+            public Class<String> getMessageType() {
+                return String.class;
+            }
 
+            @Override
+            public Mono<Void> handleMessage(String message, Acknowledger acknowledger) {
+                return Log.getCorrelationId().doOnNext(correlationIds::add).then();
+            }
+
+        };
+        var tracedMessage = Message.builder()
+                .body("\"the traced message\"")
+                .receiptHandle("the first receipt handle")
+                .messageAttributes(Map.of("correlation_id", MessageAttributeValue.builder().dataType("String").stringValue("the-correlation-id").build()))
+                .build();
+        var untracedMessage = Message.builder()
+                .body("\"the untraced message\"")
+                .receiptHandle("the second receipt handle")
+                .build();
+        var receiveMessageRequest = ReceiveMessageRequest.builder()
+                .queueUrl("the-queue-url")
+                .messageAttributeNames("correlation_id")
+                .maxNumberOfMessages(10)
+                .visibilityTimeout(5)
+                .waitTimeSeconds(20)
+                .build();
+        var receiveMessageResponse = ReceiveMessageResponse.builder()
+                .messages(tracedMessage, untracedMessage)
+                .build();
+        given(sqsClient.receiveMessage(receiveMessageRequest)).willReturn(completedFuture(receiveMessageResponse));
+
+        sqsMessageChecker.checkForMessages("the-queue-url", tracingListener).block();
+
+        assertThat(correlationIds).containsExactlyInAnyOrder("the-correlation-id", "a-generated-correlation-id");
+
+    }
+
+    @Test
+    @DisplayName("should fetch the offloaded message bodies from the payload store")
+    void claimCheck() {
+
+        List<String> handledMessages = new CopyOnWriteArrayList<>();
+        var collectingListener = new SqsListener<String>() {
+
+            @Override
+            public String getQueueName() {
+                return "the-queue-name";
+            }
+
+            @Override
+            public Class<String> getMessageType() {
+                return String.class;
+            }
+
+            @Override
+            public Mono<Void> handleMessage(String message, Acknowledger acknowledger) {
+                return Mono.fromRunnable(() -> handledMessages.add(message));
+            }
+
+        };
+        List<String> readingThreads = new CopyOnWriteArrayList<>();
+        var payloadStore = new ThreadRecordingPayloadStore(new InMemoryPayloadStore(), readingThreads);
+        var claimCheck = new ClaimCheck(payloadStore, 1, 0);
+        var claimCheckingSqsMessageChecker = new DefaultSqsMessageChecker(sqsClient, objectMapper, settings.toBuilder().claimCheck(Optional.of(claimCheck)).build());
+        var entry = claimCheck.offload("the-queue-url", SendMessageBatchRequestEntry.builder().id("0").messageBody("\"the offloaded message\"").build()).block();
+        var message = Message.builder()
+                .body(entry.messageBody())
+                .receiptHandle("the receipt handle")
+                .messageAttributes(entry.messageAttributes())
+                .build();
+        var receiveMessageRequest = ReceiveMessageRequest.builder()
+                .queueUrl("the-queue-url")
+                .messageAttributeNames("correlation_id", ClaimCheck.ATTRIBUTE_NAME)
+                .maxNumberOfMessages(10)
+                .visibilityTimeout(5)
+                .waitTimeSeconds(20)
+                .build();
+        var receiveMessageResponse = ReceiveMessageResponse.builder()
+                .messages(message)
+                .build();
+        given(sqsClient.receiveMessage(receiveMessageRequest)).willReturn(completedFuture(receiveMessageResponse));
+
+        claimCheckingSqsMessageChecker.checkForMessages("the-queue-url", collectingListener).block();
+        claimCheckingSqsMessageChecker.close();
+
+        assertThat(handledMessages).containsExactly("the offloaded message");
+        assertThat(readingThreads).isNotEmpty().allMatch(thread -> thread.startsWith("boundedElastic"));
+
+    }
+
+    @Test
+    @DisplayName("should acknowledge the duplicates without handling them")
+    void deduplication() {
+
+        List<String> handledMessages = new CopyOnWriteArrayList<>();
+        var acknowledgingListener = new SqsListener<String>() {
+
+            @Override
+            public String getQueueName() {
+                return "the-queue-name";
+            }
+
+            @Override
+            public Class<String> getMessageType() {
+                return String.class;
+            }
+
+            @Override
+            public Mono<Void> handleMessage(String message, Acknowledger acknowledger) {
+                return Mono.fromRunnable(() -> handledMessages.add(message)).then(acknowledger.acknowledge());
+            }
+
+        };
+        var receiveMessageRequest = ReceiveMessageRequest.builder()
+                .queueUrl("the-queue-url")
+                .messageSystemAttributeNames(MessageSystemAttributeName.SENT_TIMESTAMP)
+                .messageAttributeNames("correlation_id")
+                .maxNumberOfMessages(10)
+                .visibilityTimeout(5)
+                .waitTimeSeconds(20)
+                .build();
+        var message = Message.builder()
+                .messageId("the-message-id")
+                .body("\"the message\"")
+                .receiptHandle("the receipt handle")
+                .build();
+        var redeliveredMessage = message.toBuilder()
+                .receiptHandle("the receipt handle of the redelivery")
+                .build();
+        given(sqsClient.receiveMessage(receiveMessageRequest))
+                .willReturn(completedFuture(ReceiveMessageResponse.builder().messages(message).build()))
+                .willReturn(completedFuture(ReceiveMessageResponse.builder().messages(redeliveredMessage).build()));
+        given(sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).willAnswer(invocation -> {
+            DeleteMessageBatchRequest request = invocation.getArgument(0);
+            var successful = request.entries().stream().map(entry -> DeleteMessageBatchResultEntry.builder().id(entry.id()).build()).toList();
+            return completedFuture(DeleteMessageBatchResponse.builder().successful(successful).build());
+        });
+
+        var registry = new SimpleMeterRegistry();
+        var deduplicatingSqsMessageChecker = new DefaultSqsMessageChecker(sqsClient, objectMapper, settings.toBuilder().metrics(new MicrometerSqsMetrics(registry)).deduplicationStore(Optional.of(new InMemoryDeduplicationStore(10, Duration.ofMinutes(1)))).build());
+        try {
+            deduplicatingSqsMessageChecker.checkForMessages("the-queue-url", acknowledgingListener).block();
+            deduplicatingSqsMessageChecker.checkForMessages("the-queue-url", acknowledgingListener).block();
+        } finally {
+            deduplicatingSqsMessageChecker.close();
+        }
+
+        assertThat(handledMessages).containsExactly("the message");
+        verify(sqsClient, atLeastOnce()).deleteMessageBatch(deleteMessageBatchRequestArgumentCaptor.capture());
+        assertThat(deleteMessageBatchRequestArgumentCaptor.getAllValues())
+                .flatMap(DeleteMessageBatchRequest::entries)
+                .extracting(DeleteMessageBatchRequestEntry::receiptHandle)
+                .containsExactlyInAnyOrder("the receipt handle", "the receipt handle of the redelivery");
+        assertThat(registry.get("sqs_deduplication_lookups").tag("queue_name", "the-queue-url").tag("result", "hit").counter().count()).isEqualTo(1);
+        assertThat(registry.get("sqs_deduplication_lookups").tag("queue_name", "the-queue-url").tag("result", "miss").counter().count()).isEqualTo(1);
+
+    }
+
+    @Test
+    @DisplayName("should not receive more messages than the rate limit allows")
+    void rateLimit() {
+
+        var rateLimitedListener = new SqsListener<String>() {
+
+            @Override
+            public String getQueueName() {
+                return "the-queue-name";
+            }
+
+            @Override
+            public Optional<Double> getRateLimit() {
+                return Optional.of(2.0);
+            }
+
+            @Override
+            public Class<String> getMessageType() {
+                return String.class;
+            }
+
+            @Override
+            public Mono<Void> handleMessage(String message, Acknowledger acknowledger) {
+                return Mono.empty();
+            }
+
+        };
+        var receiveMessageRequest = ReceiveMessageRequest.builder()
+                .queueUrl("the-queue-url")
+                .messageSystemAttributeNames(MessageSystemAttributeName.SENT_TIMESTAMP)
+                .messageAttributeNames("correlation_id")
+                .maxNumberOfMessages(2)
+                .visibilityTimeout(5)
+                .waitTimeSeconds(20)
+                .build();
+        var receiveMessageResponse = ReceiveMessageResponse.builder()
+                .messages(Message.builder().body("\"the message\"").receiptHandle("the receipt handle").build())
+                .build();
+        given(sqsClient.receiveMessage(receiveMessageRequest)).willReturn(completedFuture(receiveMessageResponse));
+
+        var registry = new SimpleMeterRegistry();
+        var rateLimitedSqsMessageChecker = new DefaultSqsMessageChecker(sqsClient, objectMapper, settings.toBuilder().metrics(new MicrometerSqsMetrics(registry)).build());
+        rateLimitedSqsMessageChecker.checkForMessages("the-queue-url", rateLimitedListener).block();
+
+        assertThat(registry.get("sqs_throttled_duration").tag("queue_name", "the-queue-url").timer().count()).isEqualTo(1);
+        // only one message was received, so the other token is given back:
+        assertThat(rateLimitedSqsMessageChecker.getRateLimiter("the-queue-url", rateLimitedListener).orElseThrow().acquire(10).block()).isEqualTo(1);
+        assertThat(rateLimitedSqsMessageChecker.getInFlightLimiter("the-queue-url", rateLimitedListener).getInFlight()).isZero();
+
+    }
+
+    private Message buildGroupedMessage(String body, String messageGroupId) throws Exception {
+        return Message.builder()
+                .body(objectMapper.writeValueAsString(body))
+                .receiptHandle("the receipt handle of " + body)
+                .attributes(Map.of(MessageSystemAttributeName.MESSAGE_GROUP_ID, messageGroupId))
+                .build();
     }
 
 }
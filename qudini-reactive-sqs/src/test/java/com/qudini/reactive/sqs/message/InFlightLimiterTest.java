@@ -0,0 +1,53 @@
+package com.qudini.reactive.sqs.message;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("InFlightLimiter")
+class InFlightLimiterTest {
+
+    @Test
+    @DisplayName("should reserve as many slots as available, up to the requested max")
+    void acquire() {
+        var limiter = new InFlightLimiter(15);
+        assertThat(limiter.acquire(10).block()).isEqualTo(10);
+        assertThat(limiter.acquire(10).block()).isEqualTo(5);
+        assertThat(limiter.getInFlight()).isEqualTo(15);
+    }
+
+    @Test
+    @DisplayName("should wait for slots to be released once the budget is exhausted")
+    void waitForSlots() {
+        var limiter = new InFlightLimiter(2);
+        limiter.acquire(10).block();
+        var waiting = limiter.acquire(10).toFuture();
+        assertThat(waiting).isNotDone();
+        limiter.release(1);
+        assertThat(waiting.join()).isEqualTo(1);
+        assertThat(limiter.getInFlight()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("should not lose slots when a waiting poller is cancelled")
+    void cancel() {
+        var limiter = new InFlightLimiter(1);
+        limiter.acquire(10).block();
+        limiter.acquire(10).subscribe().dispose();
+        limiter.release(1);
+        assertThat(limiter.getInFlight()).isZero();
+        assertThat(limiter.acquire(10).block(Duration.ofSeconds(1))).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should refuse non-positive budgets")
+    void invalidBudget() {
+        var thrownException = assertThrows(IllegalArgumentException.class, () -> new InFlightLimiter(0));
+        assertThat(thrownException.getMessage()).isEqualTo("The max in-flight messages must be positive, got 0");
+    }
+
+}
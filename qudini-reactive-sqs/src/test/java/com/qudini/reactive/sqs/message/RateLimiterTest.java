@@ -0,0 +1,62 @@
+package com.qudini.reactive.sqs.message;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("RateLimiter")
+class RateLimiterTest {
+
+    private final AtomicLong nanoTime = new AtomicLong(0);
+
+    @Test
+    @DisplayName("should take as many tokens as available, up to the requested max")
+    void acquire() {
+        var limiter = new RateLimiter(10, 15, nanoTime::get);
+        assertThat(limiter.acquire(10).block()).isEqualTo(10);
+        assertThat(limiter.acquire(10).block()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("should refill the bucket at the given rate, up to the burst")
+    void refill() {
+        var limiter = new RateLimiter(10, 15, nanoTime::get);
+        limiter.acquire(15).block();
+        nanoTime.addAndGet(Duration.ofMillis(500).toNanos());
+        assertThat(limiter.acquire(10).block()).isEqualTo(5);
+        nanoTime.addAndGet(Duration.ofMinutes(1).toNanos());
+        assertThat(limiter.acquire(100).block()).isEqualTo(15);
+    }
+
+    @Test
+    @DisplayName("should wait for the next token once the bucket is empty")
+    void waitForTokens() {
+        var limiter = new RateLimiter(20, 1);
+        limiter.acquire(10).block();
+        var start = System.nanoTime();
+        assertThat(limiter.acquire(10).block(Duration.ofSeconds(1))).isEqualTo(1);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(40));
+    }
+
+    @Test
+    @DisplayName("should give back the unused tokens")
+    void refund() {
+        var limiter = new RateLimiter(10, 15, nanoTime::get);
+        limiter.acquire(15).block();
+        limiter.refund(3);
+        assertThat(limiter.acquire(10).block()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("should refuse non-positive rates")
+    void invalidRate() {
+        var thrownException = assertThrows(IllegalArgumentException.class, () -> new RateLimiter(0, 1));
+        assertThat(thrownException.getMessage()).isEqualTo("The rate limit must be positive, got 0.0");
+    }
+
+}
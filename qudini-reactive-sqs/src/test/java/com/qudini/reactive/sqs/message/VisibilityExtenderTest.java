@@ -0,0 +1,97 @@
+package com.qudini.reactive.sqs.message;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResponse;
+
+import java.time.Duration;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("VisibilityExtender")
+class VisibilityExtenderTest {
+
+    @Mock
+    private SqsAsyncClient sqsClient;
+
+    @Captor
+    private ArgumentCaptor<ChangeMessageVisibilityBatchRequest> changeMessageVisibilityBatchRequestArgumentCaptor;
+
+    private VisibilityExtender visibilityExtender;
+
+    @BeforeEach
+    void setUp() {
+        visibilityExtender = new VisibilityExtender(sqsClient, "the-queue-url", 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        visibilityExtender.dispose();
+    }
+
+    @Test
+    @DisplayName("should derive the heartbeat interval from the visibility timeout")
+    void heartbeatInterval() {
+        assertThat(VisibilityExtender.getHeartbeatInterval(5)).isEqualTo(Duration.ofMillis(2500));
+    }
+
+    @Test
+    @DisplayName("should extend the visibility timeout of the tracked messages")
+    void extend() throws Exception {
+        given(sqsClient.changeMessageVisibilityBatch(any(ChangeMessageVisibilityBatchRequest.class)))
+                .willReturn(completedFuture(ChangeMessageVisibilityBatchResponse.builder().build()));
+
+        var heartbeat = visibilityExtender.track("the-receipt-handle");
+        Thread.sleep(700);
+        heartbeat.dispose();
+
+        verify(sqsClient, atLeastOnce()).changeMessageVisibilityBatch(changeMessageVisibilityBatchRequestArgumentCaptor.capture());
+        var request = changeMessageVisibilityBatchRequestArgumentCaptor.getValue();
+        assertThat(request.queueUrl()).isEqualTo("the-queue-url");
+        assertThat(request.entries()).extracting(ChangeMessageVisibilityBatchRequestEntry::receiptHandle).containsExactly("the-receipt-handle");
+        assertThat(request.entries()).extracting(ChangeMessageVisibilityBatchRequestEntry::visibilityTimeout).containsExactly(1);
+        assertThat(visibilityExtender.getTrackedMessages()).isZero();
+    }
+
+    @Test
+    @DisplayName("should not extend the visibility timeout of the untracked messages")
+    void untracked() throws Exception {
+        visibilityExtender.track("the-receipt-handle").dispose();
+        Thread.sleep(700);
+        verify(sqsClient, never()).changeMessageVisibilityBatch(any(ChangeMessageVisibilityBatchRequest.class));
+    }
+
+    @Test
+    @DisplayName("should stop extending the visibility timeout of the messages SQS refused to extend")
+    void failure() throws Exception {
+        var response = ChangeMessageVisibilityBatchResponse
+                .builder()
+                .failed(BatchResultErrorEntry.builder().id("0").code("ReceiptHandleIsInvalid").build())
+                .build();
+        given(sqsClient.changeMessageVisibilityBatch(any(ChangeMessageVisibilityBatchRequest.class))).willReturn(completedFuture(response));
+
+        visibilityExtender.track("the-receipt-handle");
+        Thread.sleep(700);
+
+        assertThat(visibilityExtender.getTrackedMessages()).isZero();
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.qudini.reactive.sqs.message;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("WeightedDispatcher")
+class WeightedDispatcherTest {
+
+    @Test
+    @DisplayName("should share the handlers proportionally to the weights of the competing queues")
+    void weights() {
+        var dispatcher = new WeightedDispatcher(1);
+        var blocker = Sinks.<Void>empty();
+        dispatcher.dispatch("the-blocking-queue-url", 1, blocker::asMono).subscribe();
+        List<String> handled = new ArrayList<>();
+        for (var index = 1; index <= 4; index++) {
+            var bulkMessage = "bulk #" + index;
+            var criticalMessage = "critical #" + index;
+            dispatcher.dispatch("the-bulk-queue-url", 1, () -> Mono.fromRunnable(() -> handled.add(bulkMessage))).subscribe();
+            dispatcher.dispatch("the-critical-queue-url", 3, () -> Mono.fromRunnable(() -> handled.add(criticalMessage))).subscribe();
+        }
+        blocker.tryEmitEmpty();
+        assertThat(handled).containsExactly(
+                "bulk #1",
+                "critical #1",
+                "critical #2",
+                "critical #3",
+                "critical #4",
+                "bulk #2",
+                "bulk #3",
+                "bulk #4"
+        );
+        assertThat(dispatcher.getActiveHandlers()).isZero();
+    }
+
+    @Test
+    @DisplayName("should let a queue use all the handlers when alone")
+    void alone() {
+        var dispatcher = new WeightedDispatcher(2);
+        var blockers = List.of(Sinks.<Void>empty(), Sinks.<Void>empty(), Sinks.<Void>empty());
+        blockers.forEach(blocker -> dispatcher.dispatch("the-queue-url", 1, blocker::asMono).subscribe());
+        assertThat(dispatcher.getActiveHandlers()).isEqualTo(2);
+        blockers.get(0).tryEmitEmpty();
+        assertThat(dispatcher.getActiveHandlers()).isEqualTo(2);
+        blockers.get(1).tryEmitEmpty();
+        blockers.get(2).tryEmitEmpty();
+        assertThat(dispatcher.getActiveHandlers()).isZero();
+    }
+
+    @Test
+    @DisplayName("should release the handler of a cancelled handling")
+    void cancellation() {
+        var dispatcher = new WeightedDispatcher(1);
+        var handling = dispatcher.dispatch("the-queue-url", 1, Mono::never).subscribe();
+        var waiting = dispatcher.dispatch("the-queue-url", 1, Mono::never).subscribe();
+        waiting.dispose();
+        assertThat(dispatcher.getActiveHandlers()).isEqualTo(1);
+        handling.dispose();
+        assertThat(dispatcher.getActiveHandlers()).isZero();
+    }
+
+    @Test
+    @DisplayName("should refuse a non-positive number of handlers")
+    void invalid() {
+        var thrownException = assertThrows(IllegalArgumentException.class, () -> new WeightedDispatcher(0));
+        assertThat(thrownException.getMessage()).isEqualTo("The max concurrent handlers must be positive, got 0");
+    }
+
+}
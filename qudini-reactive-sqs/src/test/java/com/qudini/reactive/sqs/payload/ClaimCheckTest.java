@@ -0,0 +1,100 @@
+package com.qudini.reactive.sqs.payload;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@DisplayName("ClaimCheck")
+class ClaimCheckTest {
+
+    private final InMemoryPayloadStore payloadStore = spy(new InMemoryPayloadStore());
+
+    @Test
+    @DisplayName("should replace the offloaded body by its reference")
+    void offload() throws Exception {
+        var claimCheck = new ClaimCheck(payloadStore, 10, 0);
+        var entry = SendMessageBatchRequestEntry.builder().id("0").messageBody("the large body").build();
+
+        var offloadedEntry = claimCheck.offload("the-queue-url", entry).block();
+
+        assertThat(offloadedEntry.messageAttributes().get(ClaimCheck.ATTRIBUTE_NAME).stringValue()).isEqualTo("14");
+        var message = Message.builder().body(offloadedEntry.messageBody()).messageAttributes(offloadedEntry.messageAttributes()).build();
+        assertThat(ClaimCheck.isOffloaded(message)).isTrue();
+        try (var stream = claimCheck.open(message).block()) {
+            assertThat(new String(stream.readAllBytes(), UTF_8)).isEqualTo("the large body");
+        }
+    }
+
+    @Test
+    @DisplayName("should fetch the repeated references only once when caching")
+    void cache() throws Exception {
+        var claimCheck = new ClaimCheck(payloadStore, 10, 1024);
+        var entry = claimCheck.offload("the-queue-url", SendMessageBatchRequestEntry.builder().id("0").messageBody("the large body").build()).block();
+        var message = Message.builder().body(entry.messageBody()).messageAttributes(entry.messageAttributes()).build();
+
+        var first = claimCheck.open(message).map(ClaimCheckTest::read).block();
+        var second = claimCheck.open(message).map(ClaimCheckTest::read).block();
+
+        assertThat(first).isEqualTo("the large body");
+        assertThat(second).isEqualTo("the large body");
+        verify(payloadStore, times(1)).fetch(entry.messageBody());
+    }
+
+    @Test
+    @DisplayName("should stream the payloads too large to be cached")
+    void streamLarge() {
+        var claimCheck = new ClaimCheck(payloadStore, 10, 1024);
+        var largeBody = "x".repeat(200);
+        var entry = claimCheck.offload("the-queue-url", SendMessageBatchRequestEntry.builder().id("0").messageBody(largeBody).build()).block();
+        var message = Message.builder().body(entry.messageBody()).messageAttributes(entry.messageAttributes()).build();
+
+        var first = claimCheck.open(message).map(ClaimCheckTest::read).block();
+        var second = claimCheck.open(message).map(ClaimCheckTest::read).block();
+
+        assertThat(first).isEqualTo(largeBody);
+        assertThat(second).isEqualTo(largeBody);
+        verify(payloadStore, times(2)).fetch(entry.messageBody());
+    }
+
+    @Test
+    @DisplayName("should read the fetched payloads on the bounded elastic scheduler")
+    void blockingReads() {
+        List<String> readingThreads = new CopyOnWriteArrayList<>();
+        var claimCheck = new ClaimCheck(new ThreadRecordingPayloadStore(payloadStore, readingThreads), 10, 1024);
+        var entry = claimCheck.offload("the-queue-url", SendMessageBatchRequestEntry.builder().id("0").messageBody("the large body").build()).block();
+        var message = Message.builder().body(entry.messageBody()).messageAttributes(entry.messageAttributes()).build();
+
+        var body = claimCheck.open(message).map(ClaimCheckTest::read).block();
+
+        assertThat(body).isEqualTo("the large body");
+        assertThat(readingThreads).isNotEmpty().allMatch(thread -> thread.startsWith("boundedElastic"));
+    }
+
+    @Test
+    @DisplayName("should refuse a non-positive threshold")
+    void invalidThreshold() {
+        var thrownException = assertThrows(IllegalArgumentException.class, () -> new ClaimCheck(payloadStore, 0, 0));
+        assertThat(thrownException.getMessage()).isEqualTo("The claim check threshold must be positive, got 0");
+    }
+
+    private static String read(InputStream stream) {
+        try (stream) {
+            return new String(stream.readAllBytes(), UTF_8);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.qudini.reactive.sqs.payload;
+
+import reactor.core.publisher.Mono;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * <p>Records the threads reading the payloads fetched from the given store.</p>
+ */
+public final class ThreadRecordingPayloadStore implements PayloadStore {
+
+    private final PayloadStore delegate;
+
+    private final List<String> readingThreads;
+
+    public ThreadRecordingPayloadStore(PayloadStore delegate, List<String> readingThreads) {
+        this.delegate = delegate;
+        this.readingThreads = readingThreads;
+    }
+
+    @Override
+    public Mono<String> store(String queueUrl, byte[] payload) {
+        return delegate.store(queueUrl, payload);
+    }
+
+    @Override
+    public Mono<InputStream> fetch(String reference) {
+        return delegate.fetch(reference).map(stream -> new FilterInputStream(stream) {
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                readingThreads.add(Thread.currentThread().getName());
+                return super.read(bytes, offset, length);
+            }
+
+        });
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.qudini.reactive.sqs.s3;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("ResumableS3ObjectReader")
+class ResumableS3ObjectReaderTest {
+
+    private static final byte[] CONTENT = "first line\r\nsecond line\nthird lïne".getBytes(UTF_8);
+
+    private final S3ObjectLocation location = new S3ObjectLocation("the-bucket", "the-key", Optional.empty(), Optional.of("the-etag"), CONTENT.length);
+
+    @Test
+    @DisplayName("should resume the reads from the last byte received")
+    void resumption() {
+        List<Long> offsets = new CopyOnWriteArrayList<>();
+        S3ObjectSource failingSource = (location, offset) -> {
+            offsets.add(offset);
+            // each read fails after having sent 5 bytes:
+            var end = (int) Math.min(CONTENT.length, offset + 5);
+            var chunk = Flux.just(ByteBuffer.wrap(CONTENT, (int) offset, end - (int) offset));
+            return end < CONTENT.length ? chunk.concatWith(Flux.error(new IllegalStateException("fake connection reset"))) : chunk;
+        };
+        var reader = new ResumableS3ObjectReader(failingSource, 1, Duration.ofMillis(1));
+
+        var lines = reader.readLines(location).collectList().block();
+
+        assertThat(lines).containsExactly("first line", "second line", "third lïne");
+        assertThat(offsets).startsWith(0L, 5L, 10L, 15L);
+    }
+
+    @Test
+    @DisplayName("should give up after the max resumptions in a row")
+    void maxResumptions() {
+        S3ObjectSource failingSource = (location, offset) -> Flux.error(new IllegalStateException("fake connection reset"));
+        var reader = new ResumableS3ObjectReader(failingSource, 2, Duration.ofMillis(1));
+
+        var thrownException = assertThrows(IllegalStateException.class, () -> reader.read(location).blockLast());
+
+        assertThat(thrownException.getMessage()).startsWith("Retries exhausted: 2/2");
+    }
+
+    @Test
+    @DisplayName("should split lines spanning several buffers")
+    void lines() {
+        var content = Flux
+                .range(0, CONTENT.length)
+                .map(index -> ByteBuffer.wrap(CONTENT, index, 1));
+
+        var lines = ResumableS3ObjectReader.lines(content).collectList().block();
+
+        assertThat(lines).containsExactly("first line", "second line", "third lïne");
+    }
+
+    @Test
+    @DisplayName("should split lines within and across direct buffers")
+    void directBuffers() {
+        // split right between the \r and \n terminating the first line:
+        var content = Flux
+                .just(ByteBuffer.wrap(CONTENT, 0, 11), ByteBuffer.wrap(CONTENT, 11, CONTENT.length - 11))
+                .map(buffer -> ByteBuffer.allocateDirect(buffer.remaining()).put(buffer).flip());
+
+        var lines = ResumableS3ObjectReader.lines(content).collectList().block();
+
+        assertThat(lines).containsExactly("first line", "second line", "third lïne");
+    }
+
+}
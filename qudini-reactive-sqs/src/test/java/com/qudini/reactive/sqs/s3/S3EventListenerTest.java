@@ -0,0 +1,75 @@
+package com.qudini.reactive.sqs.s3;
+
+import com.qudini.reactive.sqs.message.Acknowledger;
+import com.qudini.reactive.sqs.message.S3Message;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("S3EventListener")
+class S3EventListenerTest {
+
+    private final S3ObjectSource source = (location, offset) -> Flux.just(ByteBuffer.wrap(("content of " + location.getKey()).getBytes(UTF_8)));
+
+    private final List<String> contents = new CopyOnWriteArrayList<>();
+
+    private final S3EventListener listener = new S3EventListener(new ResumableS3ObjectReader(source, 0, Duration.ofMillis(1))) {
+
+        @Override
+        public String getQueueName() {
+            return "the-queue-name";
+        }
+
+        @Override
+        public Mono<Void> handleObject(S3Message.Record record, Flux<ByteBuffer> content) {
+            return ResumableS3ObjectReader
+                    .lines(content)
+                    .doOnNext(contents::add)
+                    .then();
+        }
+
+    };
+
+    @Test
+    @DisplayName("should stream the created objects, then acknowledge the message")
+    void createdObjects() {
+        var acknowledged = new AtomicBoolean(false);
+        Acknowledger acknowledger = () -> Mono.fromRunnable(() -> acknowledged.set(true));
+        var message = S3Message
+                .builder()
+                .records(List.of(
+                        buildRecord("ObjectCreated:Put", "the+first%2Fkey"),
+                        buildRecord("ObjectRemoved:Delete", "the-removed-key"),
+                        buildRecord("ObjectCreated:CompleteMultipartUpload", "the-second-key")
+                ))
+                .build();
+
+        listener.handleMessage(message, acknowledger).block();
+
+        assertThat(contents).containsExactly("content of the first/key", "content of the-second-key");
+        assertThat(acknowledged).isTrue();
+    }
+
+    private static S3Message.Record buildRecord(String eventName, String key) {
+        return S3Message.Record
+                .builder()
+                .eventName(eventName)
+                .s3(S3Message.Record.S3
+                        .builder()
+                        .bucket(S3Message.Record.S3.Bucket.builder().name("the-bucket").build())
+                        .object(S3Message.Record.S3.Object.builder().key(key).size(42).build())
+                        .build())
+                .build();
+    }
+
+}
@@ -0,0 +1,231 @@
+package com.qudini.reactive.sqs.sender;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qudini.reactive.logging.Log;
+import com.qudini.reactive.sqs.payload.ClaimCheck;
+import com.qudini.reactive.sqs.payload.InMemoryPayloadStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.SqsException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("BatchingSqsSender")
+class BatchingSqsSenderTest {
+
+    @Mock
+    private SqsAsyncClient sqsClient;
+
+    @Captor
+    private ArgumentCaptor<SendMessageBatchRequest> sendMessageBatchRequestArgumentCaptor;
+
+    private BatchingSqsSender<String> sender;
+
+    @BeforeEach
+    void setUp() {
+        sender = new BatchingSqsSender<>(sqsClient, new ObjectMapper().writer(), "the-queue-url", Duration.ofMillis(50), "correlation_id", Optional.empty());
+    }
+
+    @AfterEach
+    void tearDown() {
+        sender.dispose();
+    }
+
+    @Test
+    @DisplayName("should coalesce concurrent sends into batches")
+    void coalescing() {
+        given(sqsClient.sendMessageBatch(any(SendMessageBatchRequest.class))).willAnswer(invocation -> succeedAll(invocation.getArgument(0)));
+
+        var sentMessages = Flux
+                .range(0, 15)
+                .flatMap(index -> sender.send("message #" + index))
+                .collectList()
+                .block();
+
+        verify(sqsClient, times(2)).sendMessageBatch(sendMessageBatchRequestArgumentCaptor.capture());
+        assertThat(sendMessageBatchRequestArgumentCaptor.getAllValues())
+                .extracting(request -> request.entries().size())
+                .containsExactlyInAnyOrder(10, 5);
+        assertThat(sendMessageBatchRequestArgumentCaptor.getAllValues().get(0).entries().get(0).messageBody()).isEqualTo("\"message #0\"");
+        assertThat(sentMessages).hasSize(15).extracting(SentMessage::getMessageId).doesNotHaveDuplicates();
+    }
+
+    @Test
+    @DisplayName("should split the batches that would exceed the max batch size in bytes")
+    void bytesLimit() {
+        given(sqsClient.sendMessageBatch(any(SendMessageBatchRequest.class))).willAnswer(invocation -> succeedAll(invocation.getArgument(0)));
+        var largeMessage = "x".repeat(100 * 1024);
+
+        Flux
+                .range(0, 3)
+                .flatMap(index -> sender.send(largeMessage))
+                .blockLast();
+
+        verify(sqsClient, times(2)).sendMessageBatch(sendMessageBatchRequestArgumentCaptor.capture());
+        assertThat(sendMessageBatchRequestArgumentCaptor.getAllValues())
+                .extracting(request -> request.entries().size())
+                .containsExactlyInAnyOrder(2, 1);
+    }
+
+    @Test
+    @DisplayName("should refuse a message exceeding the max batch size in bytes")
+    void tooLarge() {
+        var tooLargeMessage = "x".repeat(BatchingSqsSender.MAX_BATCH_BYTES);
+
+        var thrownException = assertThrows(IllegalArgumentException.class, () -> sender.send(tooLargeMessage).block());
+
+        assertThat(thrownException.getMessage()).isEqualTo("Messages sent to queue the-queue-url must not exceed 262144 bytes, got 262146");
+        verify(sqsClient, never()).sendMessageBatch(any(SendMessageBatchRequest.class));
+    }
+
+    @Test
+    @DisplayName("should refuse messages once closed")
+    void closed() {
+        sender.drain().block();
+
+        var thrownException = assertThrows(IllegalStateException.class, () -> sender.send("the-message").block(Duration.ofSeconds(1)));
+
+        assertThat(thrownException.getMessage()).isEqualTo("The sender of queue the-queue-url is closed");
+        verify(sqsClient, never()).sendMessageBatch(any(SendMessageBatchRequest.class));
+    }
+
+    @Test
+    @DisplayName("should fail the entries that could not be sent only")
+    void partialFailure() {
+        given(sqsClient.sendMessageBatch(any(SendMessageBatchRequest.class))).willAnswer(invocation -> {
+            SendMessageBatchRequest request = invocation.getArgument(0);
+            var entries = request.entries();
+            var response = SendMessageBatchResponse
+                    .builder()
+                    .successful(entries
+                            .stream()
+                            .filter(entry -> !entry.messageBody().contains("failing"))
+                            .map(entry -> SendMessageBatchResultEntry.builder().id(entry.id()).messageId("id-" + entry.id()).build())
+                            .toList())
+                    .failed(entries
+                            .stream()
+                            .filter(entry -> entry.messageBody().contains("failing"))
+                            .map(entry -> BatchResultErrorEntry.builder().id(entry.id()).code("InvalidMessageContents").message("fake error").senderFault(true).build())
+                            .toList())
+                    .build();
+            return completedFuture(response);
+        });
+
+        var succeeding = sender.send("succeeding").toFuture();
+        var failing = sender.send("failing").toFuture();
+
+        assertThat(succeeding.join().getMessageId()).startsWith("id-");
+        var thrownException = assertThrows(Exception.class, failing::join);
+        assertThat(thrownException).hasCauseInstanceOf(SqsException.class);
+        assertThat(thrownException.getCause().getMessage()).startsWith("Unable to send message to queue the-queue-url: fake error");
+    }
+
+    @Test
+    @DisplayName("should propagate the correlation id as a message attribute")
+    void correlationId() {
+        given(sqsClient.sendMessageBatch(any(SendMessageBatchRequest.class))).willAnswer(invocation -> succeedAll(invocation.getArgument(0)));
+
+        sender
+                .send("the-message", entry -> entry.messageGroupId("the-group-id"))
+                .contextWrite(Log.withLoggingContext(Map.of(Log.CORRELATION_ID_KEY, "the-correlation-id")))
+                .block();
+
+        verify(sqsClient).sendMessageBatch(sendMessageBatchRequestArgumentCaptor.capture());
+        var entry = sendMessageBatchRequestArgumentCaptor.getValue().entries().get(0);
+        assertThat(entry.messageGroupId()).isEqualTo("the-group-id");
+        assertThat(entry.messageAttributes().get("correlation_id").stringValue()).isEqualTo("the-correlation-id");
+    }
+
+    @Test
+    @DisplayName("should offload the bodies exceeding the claim check threshold")
+    void claimCheck() {
+        given(sqsClient.sendMessageBatch(any(SendMessageBatchRequest.class))).willAnswer(invocation -> succeedAll(invocation.getArgument(0)));
+        var payloadStore = new InMemoryPayloadStore();
+        var offloadingSender = new BatchingSqsSender<String>(sqsClient, new ObjectMapper().writer(), "the-queue-url", Duration.ofMillis(50), "correlation_id", Optional.of(new ClaimCheck(payloadStore, 100, 0)));
+        var tooLargeMessage = "x".repeat(BatchingSqsSender.MAX_BATCH_BYTES);
+
+        Flux
+                .just("the small message", tooLargeMessage)
+                .flatMap(offloadingSender::send)
+                .blockLast();
+        offloadingSender.dispose();
+
+        verify(sqsClient, atLeastOnce()).sendMessageBatch(sendMessageBatchRequestArgumentCaptor.capture());
+        var entries = sendMessageBatchRequestArgumentCaptor.getAllValues().stream().flatMap(request -> request.entries().stream()).toList();
+        assertThat(entries).extracting(entry -> entry.messageAttributes().containsKey(ClaimCheck.ATTRIBUTE_NAME)).containsExactlyInAnyOrder(false, true);
+        assertThat(payloadStore.getStoredPayloads()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should send the batches of a FIFO queue one after the other")
+    void fifoOrdering() {
+        List<String> events = new CopyOnWriteArrayList<>();
+        var calls = new AtomicInteger(0);
+        given(sqsClient.sendMessageBatch(any(SendMessageBatchRequest.class))).willAnswer(invocation -> {
+            SendMessageBatchRequest request = invocation.getArgument(0);
+            var call = calls.getAndIncrement();
+            var firstBody = request.entries().get(0).messageBody();
+            events.add("start " + firstBody);
+            // the first batch is the slowest one, so that the second one would overtake it if sent concurrently:
+            var delay = call == 0 ? 200 : 0;
+            return CompletableFuture
+                    .supplyAsync(() -> null, CompletableFuture.delayedExecutor(delay, MILLISECONDS))
+                    .thenCompose(ignored -> {
+                        events.add("end " + firstBody);
+                        return succeedAll(request);
+                    });
+        });
+        var fifoSender = new BatchingSqsSender<String>(sqsClient, new ObjectMapper().writer(), "the-queue-url.fifo", Duration.ofMillis(50), "correlation_id", Optional.empty());
+
+        Flux
+                .range(0, 15)
+                .flatMapSequential(index -> fifoSender.send("message #" + index, entry -> entry.messageGroupId("the-group-id")))
+                .blockLast();
+        fifoSender.dispose();
+
+        assertThat(events).containsExactly("start \"message #0\"", "end \"message #0\"", "start \"message #10\"", "end \"message #10\"");
+    }
+
+    private static CompletableFuture<SendMessageBatchResponse> succeedAll(SendMessageBatchRequest request) {
+        List<SendMessageBatchResultEntry> successful = request
+                .entries()
+                .stream()
+                .map(SendMessageBatchRequestEntry::id)
+                .map(id -> SendMessageBatchResultEntry.builder().id(id).messageId("message-id-" + request.hashCode() + "-" + id).build())
+                .toList();
+        return completedFuture(SendMessageBatchResponse.builder().successful(successful).build());
+    }
+
+}
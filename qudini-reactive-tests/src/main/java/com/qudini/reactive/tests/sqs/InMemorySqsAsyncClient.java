@@ -0,0 +1,534 @@
+package com.qudini.reactive.tests.sqs;
+
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResponse;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityResponse;
+import software.amazon.awssdk.services.sqs.model.CreateQueueRequest;
+import software.amazon.awssdk.services.sqs.model.CreateQueueResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageResponse;
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesRequest;
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesResponse;
+import software.amazon.awssdk.services.sqs.model.GetQueueUrlRequest;
+import software.amazon.awssdk.services.sqs.model.GetQueueUrlResponse;
+import software.amazon.awssdk.services.sqs.model.InvalidMessageContentsException;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sqs.model.MessageNotInflightException;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
+import software.amazon.awssdk.services.sqs.model.QueueAttributeName;
+import software.amazon.awssdk.services.sqs.model.QueueDoesNotExistException;
+import software.amazon.awssdk.services.sqs.model.ReceiptHandleIsInvalidException;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageResponse;
+import software.amazon.awssdk.services.sqs.model.SqsException;
+import software.amazon.awssdk.services.sqs.model.TooManyEntriesInBatchRequestException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * <p>An in-memory stand-in for SQS, to test listeners (or measure their throughput) without a real or containerised SQS.</p>
+ * <p>Supports the queue URL resolution, sending, receiving (including long polling), deleting and changing the visibility
+ * of messages, with the following semantics:</p>
+ * <ul>
+ *     <li>received messages are invisible for the visibility timeout of the request (or of the queue, defaults to 30 seconds),
+ *     and become visible again unless deleted or extended in the meantime,</li>
+ *     <li>queues whose name ends with <code>.fifo</code> never deliver a message while another message of the same group is in flight,</li>
+ *     <li>the <code>SentTimestamp</code>, <code>ApproximateReceiveCount</code>, <code>ApproximateFirstReceiveTimestamp</code>
+ *     and <code>MessageGroupId</code> system attributes, as well as the message attributes, are returned when requested,</li>
+ *     <li>deleting or changing the visibility of a message given a stale receipt handle fails.</li>
+ * </ul>
+ * <p>Every call completes asynchronously after the configured latency, to mimic the network round trips.
+ * Long polls are checked every {@value #LONG_POLLING_INTERVAL_MILLIS} milliseconds until their wait time elapses.</p>
+ * <p>The other operations are not supported.</p>
+ */
+public final class InMemorySqsAsyncClient implements SqsAsyncClient {
+
+    private static final String URL_PREFIX = "https://in-memory-sqs/000000000000/";
+
+    private static final int DEFAULT_VISIBILITY_TIMEOUT = 30;
+
+    private static final int MAX_BATCH_SIZE = 10;
+
+    private static final long LONG_POLLING_INTERVAL_MILLIS = 10;
+
+    private final Duration latency;
+
+    private final Clock clock;
+
+    private final ScheduledExecutorService executor;
+
+    private final Map<String, Queue> queues = new ConcurrentHashMap<>();
+
+    public InMemorySqsAsyncClient() {
+        this(Duration.ZERO);
+    }
+
+    public InMemorySqsAsyncClient(Duration latency) {
+        this(latency, Clock.systemUTC());
+    }
+
+    public InMemorySqsAsyncClient(Duration latency, Clock clock) {
+        if (latency.isNegative()) {
+            throw new IllegalArgumentException("The latency must not be negative, got " + latency);
+        }
+        this.latency = latency;
+        this.clock = clock;
+        this.executor = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), new DaemonThreadFactory());
+    }
+
+    /**
+     * <p>Creates the queue of the given name if it doesn't exist yet, and returns its URL.</p>
+     */
+    public String createQueue(String queueName) {
+        return queues.computeIfAbsent(queueName, Queue::new).url;
+    }
+
+    /**
+     * <p>The number of messages of the given queue that are available for retrieval.</p>
+     */
+    public int getVisibleMessages(String queueUrl) {
+        var queue = getQueue(queueUrl);
+        synchronized (queue) {
+            return queue.countVisible(clock.millis());
+        }
+    }
+
+    /**
+     * <p>The number of messages of the given queue that have been received but not deleted yet, and are still invisible.</p>
+     */
+    public int getInFlightMessages(String queueUrl) {
+        var queue = getQueue(queueUrl);
+        synchronized (queue) {
+            return queue.messages.size() - queue.countVisible(clock.millis());
+        }
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public CompletableFuture<CreateQueueResponse> createQueue(CreateQueueRequest request) {
+        return respond(() -> {
+            var queue = queues.computeIfAbsent(request.queueName(), Queue::new);
+            Optional
+                    .ofNullable(request.attributes().get(QueueAttributeName.VISIBILITY_TIMEOUT))
+                    .map(Integer::parseInt)
+                    .ifPresent(visibilityTimeout -> queue.visibilityTimeout = visibilityTimeout);
+            return CreateQueueResponse.builder().queueUrl(queue.url).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<GetQueueUrlResponse> getQueueUrl(GetQueueUrlRequest request) {
+        return respond(() -> {
+            var queue = queues.get(request.queueName());
+            if (queue == null) {
+                throw QueueDoesNotExistException.builder().message("The queue " + request.queueName() + " does not exist").build();
+            }
+            return GetQueueUrlResponse.builder().queueUrl(queue.url).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<GetQueueAttributesResponse> getQueueAttributes(GetQueueAttributesRequest request) {
+        return respond(() -> {
+            var queue = getQueue(request.queueUrl());
+            synchronized (queue) {
+                var visible = queue.countVisible(clock.millis());
+                return GetQueueAttributesResponse
+                        .builder()
+                        .attributes(Map.of(
+                                QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES, String.valueOf(visible),
+                                QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES_NOT_VISIBLE, String.valueOf(queue.messages.size() - visible),
+                                QueueAttributeName.VISIBILITY_TIMEOUT, String.valueOf(queue.visibilityTimeout)
+                        ))
+                        .build();
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<SendMessageResponse> sendMessage(SendMessageRequest request) {
+        return respond(() -> {
+            var queue = getQueue(request.queueUrl());
+            synchronized (queue) {
+                var message = queue.add(request.messageBody(), request.messageGroupId(), request.messageAttributes(), clock.millis());
+                return SendMessageResponse.builder().messageId(message.messageId).build();
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<SendMessageBatchResponse> sendMessageBatch(SendMessageBatchRequest request) {
+        return respond(() -> {
+            checkBatchSize(request.entries());
+            var queue = getQueue(request.queueUrl());
+            var successful = new ArrayList<SendMessageBatchResultEntry>();
+            var failed = new ArrayList<BatchResultErrorEntry>();
+            synchronized (queue) {
+                for (SendMessageBatchRequestEntry entry : request.entries()) {
+                    try {
+                        var message = queue.add(entry.messageBody(), entry.messageGroupId(), entry.messageAttributes(), clock.millis());
+                        successful.add(SendMessageBatchResultEntry.builder().id(entry.id()).messageId(message.messageId).build());
+                    } catch (SqsException e) {
+                        failed.add(toErrorEntry(entry.id(), e));
+                    }
+                }
+            }
+            return SendMessageBatchResponse.builder().successful(successful).failed(failed).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<ReceiveMessageResponse> receiveMessage(ReceiveMessageRequest request) {
+        var waitTime = Optional.ofNullable(request.waitTimeSeconds()).orElse(0);
+        var deadline = clock.millis() + latency.toMillis() + waitTime * 1000L;
+        var response = new CompletableFuture<ReceiveMessageResponse>();
+        executor.schedule(() -> receive(request, deadline, response), latency.toNanos(), NANOSECONDS);
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<DeleteMessageResponse> deleteMessage(DeleteMessageRequest request) {
+        return respond(() -> {
+            var queue = getQueue(request.queueUrl());
+            synchronized (queue) {
+                queue.delete(request.receiptHandle());
+            }
+            return DeleteMessageResponse.builder().build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<DeleteMessageBatchResponse> deleteMessageBatch(DeleteMessageBatchRequest request) {
+        return respond(() -> {
+            checkBatchSize(request.entries());
+            var queue = getQueue(request.queueUrl());
+            var successful = new ArrayList<DeleteMessageBatchResultEntry>();
+            var failed = new ArrayList<BatchResultErrorEntry>();
+            synchronized (queue) {
+                for (var entry : request.entries()) {
+                    try {
+                        queue.delete(entry.receiptHandle());
+                        successful.add(DeleteMessageBatchResultEntry.builder().id(entry.id()).build());
+                    } catch (SqsException e) {
+                        failed.add(toErrorEntry(entry.id(), e));
+                    }
+                }
+            }
+            return DeleteMessageBatchResponse.builder().successful(successful).failed(failed).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<ChangeMessageVisibilityResponse> changeMessageVisibility(ChangeMessageVisibilityRequest request) {
+        return respond(() -> {
+            var queue = getQueue(request.queueUrl());
+            synchronized (queue) {
+                queue.changeVisibility(request.receiptHandle(), request.visibilityTimeout(), clock.millis());
+            }
+            return ChangeMessageVisibilityResponse.builder().build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<ChangeMessageVisibilityBatchResponse> changeMessageVisibilityBatch(ChangeMessageVisibilityBatchRequest request) {
+        return respond(() -> {
+            checkBatchSize(request.entries());
+            var queue = getQueue(request.queueUrl());
+            var successful = new ArrayList<ChangeMessageVisibilityBatchResultEntry>();
+            var failed = new ArrayList<BatchResultErrorEntry>();
+            synchronized (queue) {
+                for (var entry : request.entries()) {
+                    try {
+                        queue.changeVisibility(entry.receiptHandle(), entry.visibilityTimeout(), clock.millis());
+                        successful.add(ChangeMessageVisibilityBatchResultEntry.builder().id(entry.id()).build());
+                    } catch (SqsException e) {
+                        failed.add(toErrorEntry(entry.id(), e));
+                    }
+                }
+            }
+            return ChangeMessageVisibilityBatchResponse.builder().successful(successful).failed(failed).build();
+        });
+    }
+
+    private void receive(ReceiveMessageRequest request, long deadline, CompletableFuture<ReceiveMessageResponse> response) {
+        if (response.isDone()) {
+            // cancelled by the caller while long polling:
+            return;
+        }
+        List<Message> messages;
+        try {
+            var queue = getQueue(request.queueUrl());
+            var now = clock.millis();
+            synchronized (queue) {
+                messages = queue.receive(request, now);
+            }
+            if (messages.isEmpty() && now < deadline) {
+                executor.schedule(() -> receive(request, deadline, response), LONG_POLLING_INTERVAL_MILLIS, MILLISECONDS);
+                return;
+            }
+        } catch (RuntimeException e) {
+            response.completeExceptionally(e);
+            return;
+        }
+        response.complete(ReceiveMessageResponse.builder().messages(messages).build());
+    }
+
+    private <T> CompletableFuture<T> respond(Supplier<T> operation) {
+        var response = new CompletableFuture<T>();
+        executor.schedule(() -> {
+            try {
+                response.complete(operation.get());
+            } catch (RuntimeException e) {
+                response.completeExceptionally(e);
+            }
+        }, latency.toNanos(), NANOSECONDS);
+        return response;
+    }
+
+    private Queue getQueue(String queueUrl) {
+        var queue = queueUrl.startsWith(URL_PREFIX) ? queues.get(queueUrl.substring(URL_PREFIX.length())) : null;
+        if (queue == null) {
+            throw QueueDoesNotExistException.builder().message("The queue " + queueUrl + " does not exist").build();
+        }
+        return queue;
+    }
+
+    private static void checkBatchSize(Collection<?> entries) {
+        if (entries.size() > MAX_BATCH_SIZE) {
+            throw TooManyEntriesInBatchRequestException.builder().message("At most " + MAX_BATCH_SIZE + " entries are allowed, got " + entries.size()).build();
+        }
+    }
+
+    private static BatchResultErrorEntry toErrorEntry(String id, SqsException exception) {
+        return BatchResultErrorEntry
+                .builder()
+                .id(id)
+                .code(exception.getClass().getSimpleName().replaceFirst("Exception$", ""))
+                .message(exception.getMessage())
+                .senderFault(true)
+                .build();
+    }
+
+    private static final class Queue {
+
+        private final String name;
+
+        private final String url;
+
+        private final boolean fifo;
+
+        private final Map<String, StoredMessage> messages = new LinkedHashMap<>();
+
+        private final Map<String, StoredMessage> messagesByReceiptHandle = new HashMap<>();
+
+        private int visibilityTimeout = DEFAULT_VISIBILITY_TIMEOUT;
+
+        private Queue(String name) {
+            this.name = name;
+            this.url = URL_PREFIX + name;
+            this.fifo = name.endsWith(".fifo");
+        }
+
+        private StoredMessage add(String body, String groupId, Map<String, MessageAttributeValue> attributes, long now) {
+            if (fifo && groupId == null) {
+                throw InvalidMessageContentsException.builder().message("The MessageGroupId is required for FIFO queue " + name).build();
+            }
+            var message = new StoredMessage(UUID.randomUUID().toString(), body, groupId, attributes, now);
+            messages.put(message.messageId, message);
+            return message;
+        }
+
+        private List<Message> receive(ReceiveMessageRequest request, long now) {
+            var maxNumberOfMessages = Optional.ofNullable(request.maxNumberOfMessages()).orElse(1);
+            var visibilityTimeout = Optional.ofNullable(request.visibilityTimeout()).orElse(this.visibilityTimeout);
+            var received = new ArrayList<Message>();
+            Set<String> blockedGroups = new HashSet<>();
+            for (var message : messages.values()) {
+                if (received.size() >= maxNumberOfMessages) {
+                    break;
+                }
+                if (!message.isVisible(now)) {
+                    blockedGroups.add(message.groupId);
+                } else if (!fifo || !blockedGroups.contains(message.groupId)) {
+                    received.add(deliver(message, request, visibilityTimeout, now));
+                }
+            }
+            return received;
+        }
+
+        private Message deliver(StoredMessage message, ReceiveMessageRequest request, int visibilityTimeout, long now) {
+            if (message.receiptHandle != null) {
+                messagesByReceiptHandle.remove(message.receiptHandle);
+            }
+            message.receiptHandle = UUID.randomUUID().toString();
+            message.invisibleUntil = now + visibilityTimeout * 1000L;
+            message.receiveCount++;
+            if (message.firstReceivedAt == 0) {
+                message.firstReceivedAt = now;
+            }
+            messagesByReceiptHandle.put(message.receiptHandle, message);
+            return Message
+                    .builder()
+                    .messageId(message.messageId)
+                    .receiptHandle(message.receiptHandle)
+                    .body(message.body)
+                    .attributes(message.getSystemAttributes(request.messageSystemAttributeNames()))
+                    .messageAttributes(message.getMessageAttributes(request.messageAttributeNames()))
+                    .build();
+        }
+
+        private void delete(String receiptHandle) {
+            var message = messagesByReceiptHandle.remove(receiptHandle);
+            if (message == null) {
+                throw ReceiptHandleIsInvalidException.builder().message("The receipt handle " + receiptHandle + " is invalid").build();
+            }
+            messages.remove(message.messageId);
+        }
+
+        private void changeVisibility(String receiptHandle, int visibilityTimeout, long now) {
+            var message = messagesByReceiptHandle.get(receiptHandle);
+            if (message == null) {
+                throw ReceiptHandleIsInvalidException.builder().message("The receipt handle " + receiptHandle + " is invalid").build();
+            }
+            if (message.isVisible(now)) {
+                throw MessageNotInflightException.builder().message("The message " + message.messageId + " is not in flight").build();
+            }
+            message.invisibleUntil = now + visibilityTimeout * 1000L;
+        }
+
+        private int countVisible(long now) {
+            return (int) messages.values().stream().filter(message -> message.isVisible(now)).count();
+        }
+
+    }
+
+    private static final class StoredMessage {
+
+        private final String messageId;
+
+        private final String body;
+
+        private final String groupId;
+
+        private final Map<String, MessageAttributeValue> attributes;
+
+        private final long sentAt;
+
+        private long firstReceivedAt;
+
+        private int receiveCount;
+
+        private long invisibleUntil;
+
+        private String receiptHandle;
+
+        private StoredMessage(String messageId, String body, String groupId, Map<String, MessageAttributeValue> attributes, long sentAt) {
+            this.messageId = messageId;
+            this.body = body;
+            this.groupId = groupId;
+            this.attributes = Map.copyOf(attributes);
+            this.sentAt = sentAt;
+        }
+
+        private boolean isVisible(long now) {
+            return invisibleUntil <= now;
+        }
+
+        private Map<MessageSystemAttributeName, String> getSystemAttributes(List<MessageSystemAttributeName> names) {
+            var all = names.contains(MessageSystemAttributeName.ALL);
+            Map<MessageSystemAttributeName, String> systemAttributes = new HashMap<>();
+            putIfRequested(systemAttributes, all, names, MessageSystemAttributeName.SENT_TIMESTAMP, String.valueOf(sentAt));
+            putIfRequested(systemAttributes, all, names, MessageSystemAttributeName.APPROXIMATE_RECEIVE_COUNT, String.valueOf(receiveCount));
+            putIfRequested(systemAttributes, all, names, MessageSystemAttributeName.APPROXIMATE_FIRST_RECEIVE_TIMESTAMP, String.valueOf(firstReceivedAt));
+            if (groupId != null) {
+                putIfRequested(systemAttributes, all, names, MessageSystemAttributeName.MESSAGE_GROUP_ID, groupId);
+            }
+            return systemAttributes;
+        }
+
+        private static void putIfRequested(Map<MessageSystemAttributeName, String> systemAttributes, boolean all, List<MessageSystemAttributeName> names, MessageSystemAttributeName name, String value) {
+            if (all || names.contains(name)) {
+                systemAttributes.put(name, value);
+            }
+        }
+
+        private Map<String, MessageAttributeValue> getMessageAttributes(List<String> names) {
+            Map<String, MessageAttributeValue> messageAttributes = new HashMap<>();
+            attributes.forEach((name, value) -> {
+                if (names.stream().anyMatch(requested -> matches(requested, name))) {
+                    messageAttributes.put(name, value);
+                }
+            });
+            return messageAttributes;
+        }
+
+        private static boolean matches(String requested, String name) {
+            if (requested.equals("All") || requested.equals(".*")) {
+                return true;
+            } else if (requested.endsWith(".*")) {
+                return name.startsWith(requested.substring(0, requested.length() - 1));
+            } else {
+                return requested.equals(name);
+            }
+        }
+
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            var thread = new Thread(runnable, "in-memory-sqs-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
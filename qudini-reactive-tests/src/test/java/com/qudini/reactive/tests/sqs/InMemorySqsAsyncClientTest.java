@@ -0,0 +1,111 @@
+package com.qudini.reactive.tests.sqs;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.GetQueueUrlRequest;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
+import software.amazon.awssdk.services.sqs.model.QueueDoesNotExistException;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("InMemorySqsAsyncClient")
+class InMemorySqsAsyncClientTest {
+
+    private final InMemorySqsAsyncClient sqsClient = new InMemorySqsAsyncClient(Duration.ofMillis(1));
+
+    @AfterEach
+    void close() {
+        sqsClient.close();
+    }
+
+    @Test
+    @DisplayName("should resolve the URL of existing queues only")
+    void queueUrl() {
+        var queueUrl = sqsClient.createQueue("the-queue-name");
+        var response = sqsClient.getQueueUrl(GetQueueUrlRequest.builder().queueName("the-queue-name").build()).join();
+        assertThat(response.queueUrl()).isEqualTo(queueUrl);
+        var thrownException = assertThrows(CompletionException.class, () -> sqsClient.getQueueUrl(GetQueueUrlRequest.builder().queueName("unknown").build()).join());
+        assertThat(thrownException).hasCauseInstanceOf(QueueDoesNotExistException.class);
+    }
+
+    @Test
+    @DisplayName("should hide received messages until they are deleted or their visibility timeout expires")
+    void visibility() {
+        var queueUrl = sqsClient.createQueue("the-queue-name");
+        sendMessages(queueUrl, 12);
+        var firstReceive = receive(queueUrl, 10, 1);
+        var secondReceive = receive(queueUrl, 10, 1);
+        assertThat(firstReceive).hasSize(10);
+        assertThat(secondReceive).hasSize(2);
+        assertThat(sqsClient.getInFlightMessages(queueUrl)).isEqualTo(12);
+        var entries = firstReceive
+                .stream()
+                .map(message -> DeleteMessageBatchRequestEntry.builder().id(message.messageId()).receiptHandle(message.receiptHandle()).build())
+                .toList();
+        var deleteResponse = sqsClient.deleteMessageBatch(DeleteMessageBatchRequest.builder().queueUrl(queueUrl).entries(entries).build()).join();
+        assertThat(deleteResponse.successful()).hasSize(10);
+        assertThat(deleteResponse.failed()).isEmpty();
+        sqsClient.changeMessageVisibility(ChangeMessageVisibilityRequest.builder().queueUrl(queueUrl).receiptHandle(secondReceive.get(0).receiptHandle()).visibilityTimeout(0).build()).join();
+        assertThat(sqsClient.getVisibleMessages(queueUrl)).isEqualTo(1);
+        var redelivered = receive(queueUrl, 10, 1);
+        assertThat(redelivered).extracting(Message::body).containsExactly(secondReceive.get(0).body());
+        assertThat(redelivered.get(0).attributes()).containsEntry(MessageSystemAttributeName.APPROXIMATE_RECEIVE_COUNT, "2");
+    }
+
+    @Test
+    @DisplayName("should wait for messages when long polling")
+    void longPolling() {
+        var queueUrl = sqsClient.createQueue("the-queue-name");
+        var request = ReceiveMessageRequest.builder().queueUrl(queueUrl).maxNumberOfMessages(10).waitTimeSeconds(1).build();
+        var response = sqsClient.receiveMessage(request);
+        sqsClient.sendMessage(SendMessageRequest.builder().queueUrl(queueUrl).messageBody("the-body").build()).join();
+        assertThat(response.join().messages()).extracting(Message::body).containsExactly("the-body");
+    }
+
+    @Test
+    @DisplayName("should not deliver a message of a FIFO queue while its group has a message in flight")
+    void fifo() {
+        var queueUrl = sqsClient.createQueue("the-queue-name.fifo");
+        var entries = List.of(
+                SendMessageBatchRequestEntry.builder().id("1").messageBody("A1").messageGroupId("A").build(),
+                SendMessageBatchRequestEntry.builder().id("2").messageBody("B1").messageGroupId("B").build(),
+                SendMessageBatchRequestEntry.builder().id("3").messageBody("A2").messageGroupId("A").build()
+        );
+        sqsClient.sendMessageBatch(SendMessageBatchRequest.builder().queueUrl(queueUrl).entries(entries).build()).join();
+        assertThat(receive(queueUrl, 1, 30)).extracting(Message::body).containsExactly("A1");
+        assertThat(receive(queueUrl, 10, 30)).extracting(Message::body).containsExactly("B1");
+    }
+
+    private void sendMessages(String queueUrl, int count) {
+        IntStream
+                .range(0, count)
+                .forEach(index -> sqsClient.sendMessage(SendMessageRequest.builder().queueUrl(queueUrl).messageBody("message #" + index).build()).join());
+    }
+
+    private List<Message> receive(String queueUrl, int maxNumberOfMessages, int visibilityTimeout) {
+        var request = ReceiveMessageRequest
+                .builder()
+                .queueUrl(queueUrl)
+                .maxNumberOfMessages(maxNumberOfMessages)
+                .visibilityTimeout(visibilityTimeout)
+                .messageSystemAttributeNames(MessageSystemAttributeName.ALL)
+                .build();
+        return sqsClient.receiveMessage(request).join().messages();
+    }
+
+}